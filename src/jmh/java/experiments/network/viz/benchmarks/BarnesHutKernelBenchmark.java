@@ -0,0 +1,95 @@
+package experiments.network.viz.benchmarks;
+
+import experiments.network.viz.gephi.ParallelRepulsion;
+import experiments.network.viz.gephi.RepulsionKernel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Barnes-Hut repulsion of one iteration, scalar against SIMD kernel in the leaves, for several leaf capacities
+// The tree is built once, only its traversal and the leaves are measured.
+// With small leaves the SIMD kernel only gets one or two vectors per leaf, larger leaves give it longer batches
+// but compute more pairs exactly, this tells which one wins on the host
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BarnesHutKernelBenchmark {
+
+    private static final double SCALING_RATIO = 2.0;
+    private static final double THETA = 1.2;
+    private static final int THREADS = 4;
+
+    public enum Kernel {
+        SCALAR, SIMD
+    }
+
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    @Param({"SCALAR", "SIMD"})
+    public Kernel kernel;
+
+    @Param({"8", "32", "64"})
+    public int leafCapacity;
+
+    @Param({"false", "true"})
+    public boolean adjustSizes;
+
+    private ParallelRepulsion repulsion;
+    private ForkJoinPool forkJoinPool;
+    private double[] x;
+    private double[] y;
+    private double[] mass;
+    private double[] size;
+    private double[] dx;
+    private double[] dy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1);
+        x = new double[nodes];
+        y = new double[nodes];
+        mass = new double[nodes];
+        size = new double[nodes];
+        dx = new double[nodes];
+        dy = new double[nodes];
+        double side = Math.sqrt(nodes) * 30;
+        for (int i = 0; i < nodes; i++) {
+            x[i] = random.nextDouble() * side;
+            y[i] = random.nextDouble() * side;
+            mass[i] = 1 + random.nextInt(4);
+            size[i] = 1 + random.nextDouble() * 3;
+        }
+        repulsion = new ParallelRepulsion(kernel == Kernel.SIMD ? RepulsionKernel.vector() : RepulsionKernel.scalar(), leafCapacity);
+        forkJoinPool = new ForkJoinPool(THREADS);
+        repulsion.buildTree(forkJoinPool, 8 * THREADS, nodes, x, y, mass, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        forkJoinPool.shutdown();
+    }
+
+    @Benchmark
+    public double[] singleThread() {
+        Arrays.fill(dx, 0);
+        Arrays.fill(dy, 0);
+        repulsion.applyForces(null, 1, nodes, x, y, mass, size, SCALING_RATIO, adjustSizes, true, THETA, 1.0, false, dx, dy);
+        return dx;
+    }
+
+    @Benchmark
+    public double[] forkJoin() {
+        Arrays.fill(dx, 0);
+        Arrays.fill(dy, 0);
+        repulsion.applyForces(forkJoinPool, 8 * THREADS, nodes, x, y, mass, size, SCALING_RATIO, adjustSizes, true, THETA, 1.0, false, dx, dy);
+        return dx;
+    }
+}
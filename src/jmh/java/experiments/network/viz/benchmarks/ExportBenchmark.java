@@ -0,0 +1,67 @@
+package experiments.network.viz.benchmarks;
+
+import experiments.network.viz.gephi.Gephi;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Export of a synthetic grid with random positions, through the Gephi preview (pdf) and the streaming exporter
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    private Gephi gephi;
+    private Path output;
+    private Path svgOutput;
+    private Path svgzOutput;
+    private Path streamingPdfOutput;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        gephi = SyntheticGrids.gephi(SyntheticGrids.topology(nodes, 3.0, SyntheticGrids.DegreeDistribution.POISSON, 1), true);
+        output = Files.createTempFile("network-viz-benchmark", ".pdf");
+        svgOutput = Files.createTempFile("network-viz-benchmark", ".svg");
+        svgzOutput = Files.createTempFile("network-viz-benchmark", ".svgz");
+        streamingPdfOutput = Files.createTempFile("network-viz-benchmark-streaming", ".pdf");
+    }
+
+    @Benchmark
+    public void pdf() throws IOException, FontFormatException {
+        gephi.print(output);
+    }
+
+    @Benchmark
+    public void svg() throws IOException {
+        gephi.exportStreaming(svgOutput);
+    }
+
+    @Benchmark
+    public void svgz() throws IOException {
+        gephi.exportStreaming(svgzOutput);
+    }
+
+    @Benchmark
+    public void streamingPdf() throws IOException {
+        gephi.exportStreaming(streamingPdfOutput);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(svgOutput);
+        Files.deleteIfExists(svgzOutput);
+        Files.deleteIfExists(streamingPdfOutput);
+    }
+}
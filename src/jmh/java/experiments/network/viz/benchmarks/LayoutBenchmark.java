@@ -0,0 +1,51 @@
+package experiments.network.viz.benchmarks;
+
+import experiments.network.viz.gephi.Gephi;
+import org.gephi.layout.spi.Layout;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of one layout iteration (one call to goAlgo) on a synthetic grid
+// For MULTILEVEL an iteration can run at any level, measurements mix coarse and fine levels
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    @Param({"3.0"})
+    public double meanDegree;
+
+    @Param({"POISSON"})
+    public SyntheticGrids.DegreeDistribution degreeDistribution;
+
+    @Param({"ATLAS2", "ATLAS2_TOQUETEAR", "ATLAS2_ARRAYS", "ATLAS2_FLOAT", "MULTILEVEL", "YIFANHU"})
+    public Gephi.LayoutAlgorithm algorithm;
+
+    private Layout layout;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticGrids.Topology topology = SyntheticGrids.topology(nodes, meanDegree, degreeDistribution, 1);
+        Gephi gephi = SyntheticGrids.gephi(topology, true);
+        layout = gephi.createLayout(algorithm);
+        layout.initAlgo();
+    }
+
+    @Benchmark
+    public void iteration() {
+        layout.goAlgo();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        layout.endAlgo();
+    }
+}
@@ -0,0 +1,121 @@
+package experiments.network.viz.benchmarks;
+
+import experiments.network.viz.gephi.Gephi;
+import experiments.network.viz.gephi.ParallelRepulsion;
+import experiments.network.viz.gephi.QuadTree;
+import org.gephi.graph.api.Node;
+import org.gephi.layout.plugin.forceAtlas2.ForceAtlas2LayoutData;
+import org.gephi.layout.plugin.forceAtlas2.ForceFactory;
+import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
+import org.gephi.layout.plugin.forceAtlas2.Region;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Barnes-Hut repulsion of one iteration, Gephi regions rebuilt every iteration against the flat quadtree
+// Both build and traverse on a single thread, run with -prof gc to compare allocations per iteration.
+// Only the tree is measured here, LayoutBenchmark with -prof gc gives the allocations of a whole layout iteration
+// The parallel repulsion is also compared on fixed ranges of a thread pool against cost balanced fork/join blocks
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuadTreeBenchmark {
+
+    private static final double SCALING_RATIO = 2.0;
+    private static final double THETA = 1.2;
+    private static final int THREADS = 4;
+
+    @Param({"1000", "10000", "100000"})
+    public int nodes;
+
+    private Node[] graphNodes;
+    private RepulsionForce repulsion;
+    private double[] x;
+    private double[] y;
+    private double[] mass;
+    private double[] size;
+    private double[] dx;
+    private double[] dy;
+    private final QuadTree tree = new QuadTree();
+    private final ParallelRepulsion rangesRepulsion = new ParallelRepulsion();
+    private final ParallelRepulsion forkJoinRepulsion = new ParallelRepulsion();
+    private ExecutorService fixedPool;
+    private ForkJoinPool forkJoinPool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Gephi gephi = SyntheticGrids.gephi(SyntheticGrids.topology(nodes, 3.0, SyntheticGrids.DegreeDistribution.POISSON, 1), false);
+        graphNodes = gephi.graph.getNodes().toArray();
+        x = new double[graphNodes.length];
+        y = new double[graphNodes.length];
+        mass = new double[graphNodes.length];
+        size = new double[graphNodes.length];
+        dx = new double[graphNodes.length];
+        dy = new double[graphNodes.length];
+        for (int i = 0; i < graphNodes.length; i++) {
+            Node n = graphNodes[i];
+            ForceAtlas2LayoutData layoutData = new ForceAtlas2LayoutData();
+            layoutData.mass = 1 + gephi.graph.getDegree(n);
+            n.setLayoutData(layoutData);
+            x[i] = n.x();
+            y[i] = n.y();
+            mass[i] = layoutData.mass;
+            size[i] = n.size();
+        }
+        repulsion = ForceFactory.builder.buildRepulsion(false, SCALING_RATIO);
+        fixedPool = Executors.newFixedThreadPool(THREADS);
+        forkJoinPool = new ForkJoinPool(THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixedPool.shutdown();
+        forkJoinPool.shutdown();
+    }
+
+    @Benchmark
+    public Region gephiRegion() {
+        Region region = new Region(graphNodes);
+        region.buildSubRegions();
+        for (Node n : graphNodes) {
+            region.applyForce(n, repulsion, THETA);
+        }
+        return region;
+    }
+
+    @Benchmark
+    public double[] quadTree() {
+        Arrays.fill(dx, 0);
+        Arrays.fill(dy, 0);
+        tree.build(null, 1, x.length, x, y, mass, size);
+        for (int i = 0; i < x.length; i++) {
+            tree.applyRepulsion(i, x[i], y[i], mass[i], size[i], SCALING_RATIO, false, THETA, dx, dy);
+        }
+        return dx;
+    }
+
+    @Benchmark
+    public double[] parallelRepulsionRanges() {
+        return parallelRepulsion(rangesRepulsion, fixedPool);
+    }
+
+    @Benchmark
+    public double[] parallelRepulsionForkJoin() {
+        return parallelRepulsion(forkJoinRepulsion, forkJoinPool);
+    }
+
+    private double[] parallelRepulsion(ParallelRepulsion parallelRepulsion, ExecutorService pool) {
+        Arrays.fill(dx, 0);
+        Arrays.fill(dy, 0);
+        parallelRepulsion.apply(pool, 8 * THREADS, x.length, x, y, mass, size, SCALING_RATIO, false, true, THETA, 1.0, false, dx, dy);
+        return dx;
+    }
+}
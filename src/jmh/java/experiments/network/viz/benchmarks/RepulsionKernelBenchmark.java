@@ -0,0 +1,71 @@
+package experiments.network.viz.benchmarks;
+
+import experiments.network.viz.gephi.RepulsionKernel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Exact repulsion of all the nodes against all the others, scalar against SIMD kernel, on a single thread
+// The forked JVM adds the Vector API module, the SIMD kernel uses the preferred species of the host (AVX2, AVX-512)
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class RepulsionKernelBenchmark {
+
+    private static final double SCALING_RATIO = 2.0;
+
+    public enum Kernel {
+        SCALAR, SIMD
+    }
+
+    @Param({"1000", "5000"})
+    public int nodes;
+
+    @Param({"SCALAR", "SIMD"})
+    public Kernel kernel;
+
+    @Param({"false", "true"})
+    public boolean adjustSizes;
+
+    private RepulsionKernel repulsionKernel;
+    private double[] x;
+    private double[] y;
+    private double[] mass;
+    private double[] size;
+    private double[] dx;
+    private double[] dy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        repulsionKernel = kernel == Kernel.SIMD ? RepulsionKernel.vector() : RepulsionKernel.scalar();
+        Random random = new Random(1);
+        x = new double[nodes];
+        y = new double[nodes];
+        mass = new double[nodes];
+        size = new double[nodes];
+        dx = new double[nodes];
+        dy = new double[nodes];
+        for (int i = 0; i < nodes; i++) {
+            x[i] = random.nextDouble() * 1000;
+            y[i] = random.nextDouble() * 1000;
+            mass[i] = 1 + random.nextInt(4);
+            size[i] = 1 + random.nextDouble() * 3;
+        }
+    }
+
+    @Benchmark
+    public double[] repulsion() {
+        Arrays.fill(dx, 0);
+        Arrays.fill(dy, 0);
+        for (int i = 0; i < nodes; i++) {
+            repulsionKernel.repulse(i, x[i], y[i], mass[i], size[i], x, y, mass, size, 0, nodes, SCALING_RATIO, adjustSizes, dx, dy);
+        }
+        return dx;
+    }
+}
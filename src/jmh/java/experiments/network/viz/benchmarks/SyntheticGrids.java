@@ -0,0 +1,148 @@
+package experiments.network.viz.benchmarks;
+
+import experiments.network.viz.gephi.Gephi;
+import org.gephi.graph.api.Node;
+import org.gephi.layout.plugin.AbstractLayout;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Synthetic grid topologies for benchmarks
+// Nodes sit on a square lattice, a spanning tree along rows keeps the grid connected
+// and every node adds a random number of extra edges to nodes at most REACH lattice cells away,
+// so the grid is meshed locally like a transmission network. The number of extra edges per node
+// follows the requested degree distribution
+// IIDM networks for benchmarks come from SyntheticNetworkGenerator
+
+public final class SyntheticGrids {
+
+    private static final int REACH = 2;
+
+    public enum DegreeDistribution {
+        // Every node has close to the mean degree
+        REGULAR,
+        // Extra edges per node follow a Poisson distribution
+        POISSON,
+        // Extra edges per node follow a Pareto distribution, a few nodes become hubs
+        POWER_LAW
+    }
+
+    public static final class Topology {
+        public final int nodeCount;
+        public final int[] edgeSources;
+        public final int[] edgeTargets;
+        // Random reactances, used as edge weights
+        public final double[] edgeX;
+
+        Topology(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeX) {
+            this.nodeCount = nodeCount;
+            this.edgeSources = edgeSources;
+            this.edgeTargets = edgeTargets;
+            this.edgeX = edgeX;
+        }
+
+        public int getEdgeCount() {
+            return edgeSources.length;
+        }
+    }
+
+    private SyntheticGrids() {
+    }
+
+    public static Topology topology(int nodeCount, double meanDegree, DegreeDistribution distribution, long seed) {
+        if (nodeCount < 2) {
+            throw new IllegalArgumentException("At least two nodes required " + nodeCount);
+        }
+        if (meanDegree < 2) {
+            throw new IllegalArgumentException("Mean degree must be at least 2 " + meanDegree);
+        }
+        Random random = new Random(seed);
+        int side = (int) Math.ceil(Math.sqrt(nodeCount));
+        // The spanning tree gives almost 2 to the mean degree, each extra edge adds 2 more
+        double meanExtra = (meanDegree - 2) / 2;
+
+        int capacity = (int) (nodeCount * (1 + 2 * meanExtra)) + 16;
+        int[] sources = new int[capacity];
+        int[] targets = new int[capacity];
+        int edgeCount = 0;
+        for (int i = 1; i < nodeCount; i++) {
+            int neighbor = i % side == 0 ? i - side : i - 1;
+            sources[edgeCount] = neighbor;
+            targets[edgeCount] = i;
+            edgeCount++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            int extra = extraEdges(random, meanExtra, distribution);
+            int row = i / side;
+            int col = i % side;
+            for (int k = 0; k < extra; k++) {
+                int r = row + random.nextInt(2 * REACH + 1) - REACH;
+                int c = col + random.nextInt(2 * REACH + 1) - REACH;
+                int j = r * side + c;
+                if (r < 0 || c < 0 || c >= side || j >= nodeCount || j == i) {
+                    continue;
+                }
+                if (edgeCount == sources.length) {
+                    sources = Arrays.copyOf(sources, 2 * edgeCount);
+                    targets = Arrays.copyOf(targets, 2 * edgeCount);
+                }
+                sources[edgeCount] = i;
+                targets[edgeCount] = j;
+                edgeCount++;
+            }
+        }
+
+        double[] edgeX = new double[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            edgeX[e] = 1 + 49 * random.nextDouble();
+        }
+        return new Topology(nodeCount,
+                Arrays.copyOf(sources, edgeCount),
+                Arrays.copyOf(targets, edgeCount),
+                edgeX);
+    }
+
+    private static int extraEdges(Random random, double mean, DegreeDistribution distribution) {
+        switch (distribution) {
+            case REGULAR:
+                return roundRandomly(random, mean);
+            case POISSON:
+                // Knuth, means here are small
+                double l = Math.exp(-mean);
+                int k = 0;
+                double p = random.nextDouble();
+                while (p > l) {
+                    k++;
+                    p *= random.nextDouble();
+                }
+                return k;
+            case POWER_LAW:
+                // Pareto with shape 2 has mean 2 * xm
+                double xm = mean / 2;
+                return roundRandomly(random, xm / Math.sqrt(1 - random.nextDouble()));
+            default:
+                throw new IllegalArgumentException("Unknown degree distribution " + distribution);
+        }
+    }
+
+    // Keeps the mean of non integer values
+    private static int roundRandomly(Random random, double value) {
+        int base = (int) value;
+        return base + (random.nextDouble() < value - base ? 1 : 0);
+    }
+
+    // Gephi graph with random initial positions
+    public static Gephi gephi(Topology topology, boolean useWeights) {
+        Gephi gephi = new Gephi();
+        gephi.setUseWeights(useWeights);
+        Node[] nodes = new Node[topology.nodeCount];
+        for (int i = 0; i < topology.nodeCount; i++) {
+            nodes[i] = gephi.addNode("N" + i, "N" + i);
+        }
+        for (int e = 0; e < topology.getEdgeCount(); e++) {
+            gephi.addEdge("E" + e, nodes[topology.edgeSources[e]], nodes[topology.edgeTargets[e]], 1.0 / topology.edgeX[e]);
+        }
+        AbstractLayout.ensureSafeLayoutNodePositions(gephi.model);
+        return gephi;
+    }
+}
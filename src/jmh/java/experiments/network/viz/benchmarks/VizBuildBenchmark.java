@@ -0,0 +1,45 @@
+package experiments.network.viz.benchmarks;
+
+import com.powsybl.iidm.network.Network;
+import experiments.network.viz.GraphExtractor;
+import experiments.network.viz.SyntheticNetworkGenerator;
+import experiments.network.viz.Viz;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Gephi graph built from an IIDM network, includes the creation of the Gephi workspace
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VizBuildBenchmark {
+
+    @Param({"1000", "10000"})
+    public int substations;
+
+    @Param({"VOLTAGE_LEVEL", "SUBSTATION"})
+    public GraphExtractor.Granularity granularity;
+
+    private Network network;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator();
+        generator.setSubstationCount(substations);
+        network = generator.generate();
+    }
+
+    // Workspaces are released, only the size of the graph is returned
+    @Benchmark
+    public int buildGraph() {
+        try (Viz viz = new Viz(network, vl -> true, true, Viz.WeightInterpretation.WEIGHT_IS_IMPEDANCE)) {
+            viz.setGranularity(granularity);
+            viz.buildGraph();
+            return viz.getGraphSize();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package experiments.network.viz;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Nodes and edges extracted from a network, with all the attributes needed to build the Gephi graph
+// Nothing here refers to IIDM or Gephi objects, so it can be built in parallel and loaded in one batch
+
+public final class GraphData {
+
+    public static final class NodeData {
+        public final String id;
+        public final String label;
+        public final double netActivePower;
+        public final double nominalVoltage;
+        public final String substation;
+
+        public NodeData(String id, String label, double netActivePower, double nominalVoltage, String substation) {
+            this.id = id;
+            this.label = label;
+            this.netActivePower = netActivePower;
+            this.nominalVoltage = nominalVoltage;
+            this.substation = substation;
+        }
+    }
+
+    public static final class EdgeData {
+        // Id of the network element, the three edges of a three windings transformer share it
+        public final String elementId;
+        public final String label;
+        public final String node1;
+        public final String node2;
+        public final double weight;
+        // Reactance of the element, resistance for HVDC lines, the weight is computed from it
+        public final double impedance;
+        public final double nominalVoltage;
+        public final boolean dc;
+        // Ids of the network elements merged in this edge, the first one is the element id, and their number
+        public final List<String> memberIds;
+        public final int multiplicity;
+
+        public EdgeData(String elementId, String label, String node1, String node2, double weight, double impedance, double nominalVoltage, boolean dc) {
+            this(List.of(elementId), label, node1, node2, weight, impedance, nominalVoltage, dc);
+        }
+
+        public EdgeData(List<String> memberIds, String label, String node1, String node2, double weight, double impedance, double nominalVoltage, boolean dc) {
+            this.elementId = memberIds.get(0);
+            this.memberIds = memberIds;
+            this.multiplicity = memberIds.size();
+            this.label = label;
+            this.node1 = node1;
+            this.node2 = node2;
+            this.weight = weight;
+            this.impedance = impedance;
+            this.nominalVoltage = nominalVoltage;
+            this.dc = dc;
+        }
+    }
+
+    public final List<NodeData> nodes = new ArrayList<>();
+    public final List<EdgeData> edges = new ArrayList<>();
+}
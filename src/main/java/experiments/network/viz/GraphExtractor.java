@@ -0,0 +1,264 @@
+package experiments.network.viz;
+
+import com.powsybl.iidm.network.*;
+import experiments.network.viz.GraphData.EdgeData;
+import experiments.network.viz.GraphData.NodeData;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Extracts the graph of a network to plain node and edge data
+// Each kind of element is extracted in parallel with the others, and the elements of each kind
+// with a parallel stream, filters, weights and active power aggregates are computed here,
+// so building the Gephi graph afterwards is only creating nodes and edges.
+// Results keep the order of the input lists, the graph is the same as with a sequential extraction
+
+public class GraphExtractor {
+
+    // Parallel branches in a single edge unless -Dviz.mergeParallelEdges=false, the default of every extraction
+    public static final boolean DEFAULT_MERGE_PARALLEL_EDGES = Boolean.parseBoolean(System.getProperty("viz.mergeParallelEdges", "true"));
+
+    private final Network network;
+    private final Predicate<VoltageLevel> voltageLevelFilter;
+    private final DoubleUnaryOperator weight;
+    private NodeGranularity granularity = new VoltageLevelNodes();
+    private boolean mergeParallelEdges = DEFAULT_MERGE_PARALLEL_EDGES;
+    private volatile Map<String, Double> netActivePowerByVoltageLevelId;
+
+    // Edge weights are computed from element impedances with the given function
+    public GraphExtractor(Network network, Predicate<VoltageLevel> voltageLevelFilter, DoubleUnaryOperator weight) {
+        this.network = network;
+        this.voltageLevelFilter = voltageLevelFilter;
+        this.weight = weight;
+    }
+
+    // What a node of the graph represents, a voltage level (the default) or a whole substation
+    // With substations the graph is smaller: transformers are inside substations and are left out,
+    // and the lines between the same two substations are bundled in a single edge
+    public enum Granularity {
+        VOLTAGE_LEVEL, SUBSTATION
+    }
+
+    public void setGranularity(Granularity granularity) {
+        this.granularity = switch (granularity) {
+            case VOLTAGE_LEVEL -> new VoltageLevelNodes();
+            case SUBSTATION -> new SubstationNodes();
+        };
+    }
+
+    // Parallel elements, as double circuit lines or parallel transformers, in a single edge
+    // Always done with substation nodes
+    public void setMergeParallelEdges(boolean mergeParallelEdges) {
+        this.mergeParallelEdges = mergeParallelEdges;
+    }
+
+    public GraphData extract() {
+        return extract(network.getLineStream().toList(),
+                network.getTieLineStream().toList(),
+                network.getTwoWindingsTransformerStream().toList(),
+                network.getThreeWindingsTransformerStream().toList(),
+                network.getHvdcLineStream().toList());
+    }
+
+    public GraphData extract(List<Line> lines, List<TieLine> tieLines,
+                             List<TwoWindingsTransformer> twoWindingsTransformers,
+                             List<ThreeWindingsTransformer> threeWindingsTransformers,
+                             List<HvdcLine> hvdcLines) {
+        CompletableFuture<Map<String, Double>> netActivePowers = CompletableFuture.supplyAsync(this::netActivePowerByVoltageLevelId);
+        CompletableFuture<List<EdgeData>> lineEdges = CompletableFuture.supplyAsync(() -> lines.parallelStream()
+                .filter(l -> accepted(l.getTerminal1(), l.getTerminal2()))
+                .map(l -> branchEdge(l.getId(), l.getNameOrId(), l.getTerminal1(), l.getTerminal2(), l.getX()))
+                .toList());
+        CompletableFuture<List<EdgeData>> tieLineEdges = CompletableFuture.supplyAsync(() -> tieLines.parallelStream()
+                .filter(l -> accepted(l.getTerminal1(), l.getTerminal2()))
+                .map(l -> branchEdge(l.getId(), l.getNameOrId(), l.getTerminal1(), l.getTerminal2(), l.getX()))
+                .toList());
+        CompletableFuture<List<EdgeData>> twoWindingsTransformerEdges = CompletableFuture.supplyAsync(() -> twoWindingsTransformers.parallelStream()
+                .filter(t -> accepted(t.getTerminal1(), t.getTerminal2()))
+                .map(t -> branchEdge(t.getId(), t.getNameOrId(), t.getTerminal1(), t.getTerminal2(), t.getX()))
+                .toList());
+        CompletableFuture<List<EdgeData>> threeWindingsTransformerEdges = CompletableFuture.supplyAsync(() -> threeWindingsTransformers.parallelStream()
+                .filter(t -> accepted(t.getLeg1().getTerminal(), t.getLeg2().getTerminal(), t.getLeg3().getTerminal()))
+                .flatMap(this::threeWindingsTransformerEdges)
+                .toList());
+        CompletableFuture<List<EdgeData>> hvdcLineEdges = CompletableFuture.supplyAsync(() -> hvdcLines.parallelStream()
+                .filter(l -> accepted(l.getConverterStation1().getTerminal(), l.getConverterStation2().getTerminal()))
+                .map(l -> new EdgeData(l.getId(), l.getNameOrId(),
+                        granularity.nodeId(l.getConverterStation1().getTerminal()),
+                        granularity.nodeId(l.getConverterStation2().getTerminal()),
+                        weight.applyAsDouble(l.getR()), l.getR(), l.getNominalV(), true))
+                .toList());
+
+        GraphData data = new GraphData();
+        Stream.of(lineEdges, tieLineEdges, twoWindingsTransformerEdges, threeWindingsTransformerEdges, hvdcLineEdges)
+                .forEach(edges -> data.edges.addAll(edges.join()));
+        netActivePowers.join();
+        boolean substations = granularity instanceof SubstationNodes;
+        if (substations || mergeParallelEdges) {
+            List<EdgeData> merged = mergeParallelEdges(data.edges, substations, weight);
+            data.edges.clear();
+            data.edges.addAll(merged);
+        }
+
+        // Nodes in order of first appearance, the inner nodes of three windings transformers are created here
+        Set<String> nodeIds = new LinkedHashSet<>();
+        for (EdgeData edge : data.edges) {
+            nodeIds.add(edge.node1);
+            nodeIds.add(edge.node2);
+        }
+        Map<String, ThreeWindingsTransformer> innerNodeTransformers = new HashMap<>();
+        threeWindingsTransformers.forEach(t -> innerNodeTransformers.put(t.getId(), t));
+        data.nodes.addAll(nodeIds.parallelStream()
+                .map(id -> innerNodeTransformers.containsKey(id) ? innerNodeData(innerNodeTransformers.get(id)) : granularity.nodeData(id))
+                .toList());
+        return data;
+    }
+
+    private EdgeData branchEdge(String id, String label, Terminal t1, Terminal t2, double x) {
+        return new EdgeData(id, label, granularity.nodeId(t1), granularity.nodeId(t2),
+                weight.applyAsDouble(x), x, t1.getVoltageLevel().getNominalV(), false);
+    }
+
+    // One edge from each leg to an inner node with the id of the transformer,
+    // none if all the legs are in the same node of the graph
+    private Stream<EdgeData> threeWindingsTransformerEdges(ThreeWindingsTransformer t) {
+        String label = t.getNameOrId();
+        String node1 = granularity.nodeId(t.getLeg1().getTerminal());
+        if (node1.equals(granularity.nodeId(t.getLeg2().getTerminal())) && node1.equals(granularity.nodeId(t.getLeg3().getTerminal()))) {
+            return Stream.empty();
+        }
+        return Stream.of(t.getLeg1(), t.getLeg2(), t.getLeg3())
+                .map(leg -> new EdgeData(t.getId(), label, granularity.nodeId(leg.getTerminal()), t.getId(),
+                        weight.applyAsDouble(leg.getX()), leg.getX(), leg.getTerminal().getVoltageLevel().getNominalV(), false));
+    }
+
+    // Edges between the same two nodes, AC or DC, are merged in one, with the impedance of the elements in parallel,
+    // their admittances added, so with WEIGHT_IS_ADMITTANCE the weight of the edge is the sum of the weights of its members.
+    // The merged edge keeps the label of its first member, the ids of all the members and the highest nominal voltage
+    // Edges inside a node can be left out.
+    // Admittances are added on the absolute value of the reactances, a negative one (series compensation,
+    // star legs of three windings transformers) would otherwise cancel the others. Members with a zero or
+    // non finite impedance, as bus couplers or DC links without resistance, are not merged and stay edges of their own
+    static List<EdgeData> mergeParallelEdges(List<EdgeData> edges, boolean dropInternalEdges, DoubleUnaryOperator weight) {
+        Map<String, List<EdgeData>> bundles = new LinkedHashMap<>();
+        for (EdgeData edge : edges) {
+            if (dropInternalEdges && edge.node1.equals(edge.node2)) {
+                continue;
+            }
+            String key = edge.node1.compareTo(edge.node2) < 0
+                    ? edge.node1 + '\n' + edge.node2 + '\n' + edge.dc
+                    : edge.node2 + '\n' + edge.node1 + '\n' + edge.dc;
+            bundles.computeIfAbsent(key, k -> new ArrayList<>(1)).add(edge);
+        }
+        List<EdgeData> result = new ArrayList<>(bundles.size());
+        for (List<EdgeData> bundle : bundles.values()) {
+            List<EdgeData> mergeable = new ArrayList<>(bundle.size());
+            for (EdgeData edge : bundle) {
+                if (Double.isFinite(edge.impedance) && edge.impedance != 0) {
+                    mergeable.add(edge);
+                } else {
+                    result.add(edge);
+                }
+            }
+            if (mergeable.size() <= 1) {
+                result.addAll(mergeable);
+                continue;
+            }
+            EdgeData first = mergeable.get(0);
+            double admittance = 0;
+            double nominalVoltage = 0;
+            List<String> memberIds = new ArrayList<>(mergeable.size());
+            for (EdgeData edge : mergeable) {
+                admittance += 1.0 / Math.abs(edge.impedance);
+                nominalVoltage = Math.max(nominalVoltage, edge.nominalVoltage);
+                memberIds.add(edge.elementId);
+            }
+            double impedance = 1.0 / admittance;
+            result.add(new EdgeData(memberIds, first.label, first.node1, first.node2,
+                    weight.applyAsDouble(impedance), impedance, nominalVoltage, first.dc));
+        }
+        return result;
+    }
+
+    private NodeData innerNodeData(ThreeWindingsTransformer t) {
+        return new NodeData(t.getId(), "", 0.0, 0.0, GridHierarchy.substationId(t.getLeg1().getTerminal()));
+    }
+
+    private boolean accepted(Terminal... ts) {
+        for (Terminal t : ts) {
+            if (voltageLevelFilter.test(t.getVoltageLevel())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Loads minus generation of each voltage level, computed once in a single pass over loads and generators
+    private Map<String, Double> netActivePowerByVoltageLevelId() {
+        Map<String, Double> result = netActivePowerByVoltageLevelId;
+        if (result == null) {
+            synchronized (this) {
+                result = netActivePowerByVoltageLevelId;
+                if (result == null) {
+                    result = new HashMap<>();
+                    for (Load load : network.getLoads()) {
+                        result.merge(load.getTerminal().getVoltageLevel().getId(), load.getP0(), Double::sum);
+                    }
+                    for (Generator generator : network.getGenerators()) {
+                        result.merge(generator.getTerminal().getVoltageLevel().getId(), -generator.getTargetP(), Double::sum);
+                    }
+                    netActivePowerByVoltageLevelId = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private double netActivePower(VoltageLevel vl) {
+        return netActivePowerByVoltageLevelId().getOrDefault(vl.getId(), 0.0);
+    }
+
+    // What a node of the graph represents
+    interface NodeGranularity {
+        String nodeId(Terminal t);
+
+        NodeData nodeData(String nodeId);
+    }
+
+    class VoltageLevelNodes implements NodeGranularity {
+        public String nodeId(Terminal t) {
+            return t.getVoltageLevel().getId();
+        }
+
+        public NodeData nodeData(String nodeId) {
+            VoltageLevel vl = network.getVoltageLevel(nodeId);
+            String label = GridHierarchy.substationName(vl) + " " + vl.getNameOrId();
+            return new NodeData(nodeId, label, netActivePower(vl), vl.getNominalV(), GridHierarchy.substationId(vl));
+        }
+    }
+
+    class SubstationNodes implements NodeGranularity {
+        public String nodeId(Terminal t) {
+            return GridHierarchy.substationId(t);
+        }
+
+        public NodeData nodeData(String nodeId) {
+            Substation substation = network.getSubstation(nodeId);
+            if (substation == null) {
+                throw new RuntimeException("Missing substation " + nodeId);
+            }
+            double netActivePower = 0;
+            double maxNominalVoltage = 0;
+            for (VoltageLevel vl : substation.getVoltageLevels()) {
+                netActivePower += netActivePower(vl);
+                maxNominalVoltage = Math.max(maxNominalVoltage, vl.getNominalV());
+            }
+            String name = substation.getNameOrId();
+            String label = name.equals("undefined") ? substation.getId() : name;
+            return new NodeData(nodeId, label, netActivePower, maxNominalVoltage, substation.getId());
+        }
+    }
+}
@@ -2,26 +2,40 @@ package experiments.network.viz;
 
 import com.powsybl.iidm.network.*;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 // Just to handle what is the backbone and what is "below" the backbone in a Network
 
 public class GridHierarchy {
 
+    // Lower bound of the nominal voltage of each tier, from the highest tier:
+    // 400 kV from 300 kV, 220 kV from 180 kV, 150 kV from 100 kV, and 63 kV with everything below
+    public static final double[] DEFAULT_TIER_MIN_NOMINAL_VOLTAGES = {300, 180, 100, 0};
+
     private final Network network;
     private Backbone backbone;
+    private List<Line> lines;
+    private BitSet backboneLines;
+    private double[] tierMinNominalVoltages = DEFAULT_TIER_MIN_NOMINAL_VOLTAGES;
+    private List<Tier> tiers;
 
     public static String substationId(Terminal t) {
-        return t.getVoltageLevel().getSubstation().map(Substation::getId).orElse("NETWORK");
+        return substationId(t.getVoltageLevel());
+    }
+
+    public static String substationId(VoltageLevel vl) {
+        return vl.getSubstation().map(Substation::getId).orElse("NETWORK");
     }
 
     public static String substationName(Terminal t) {
-        String name = t.getVoltageLevel().getSubstation().map(Substation::getNameOrId).orElse("Network");
+        return substationName(t.getVoltageLevel());
+    }
+
+    public static String substationName(VoltageLevel vl) {
+        String name = vl.getSubstation().map(Substation::getNameOrId).orElse("Network");
         if (name.equals("undefined")) {
-            name = substationId(t);
+            name = substationId(vl);
         }
         return name;
     }
@@ -36,37 +50,213 @@ public class GridHierarchy {
         public final List<HvdcLine> hvdcLines;
     }
 
+    // Elements that appear in a tier: lines of its nominal voltages, transformers whose lowest voltage winding is in the tier,
+    // and HVDC lines whose lowest voltage converter station is in the tier
+    public static class Tier {
+        public Tier(int index, double minNominalVoltage) {
+            this.index = index;
+            this.minNominalVoltage = minNominalVoltage;
+        }
+
+        public final int index;
+        public final double minNominalVoltage;
+        public final List<Line> lines = new ArrayList<>();
+        public final List<TieLine> tieLines = new ArrayList<>();
+        public final List<TwoWindingsTransformer> twoWindingsTransformers = new ArrayList<>();
+        public final List<ThreeWindingsTransformer> threeWindingsTransformers = new ArrayList<>();
+        public final List<HvdcLine> hvdcLines = new ArrayList<>();
+    }
+
     public GridHierarchy(Network network) {
         this.network = network;
     }
 
+    // Lines are classified by their index in the list of all lines, backbone membership is a bit set over indices
     public Backbone backbone() {
         if (backbone == null) {
-            backbone = new Backbone(computeBackboneLines(), computeBackboneHvdcLines());
-            fixAddMissingLines();
+            lines = network.getLineStream().collect(Collectors.toList());
+            backboneLines = computeBackboneLines();
+            connectBackboneIslands();
+            backbone = new Backbone(linesOf(backboneLines, true), computeBackboneHvdcLines());
+            System.out.println("  Backbone lines size        = " + backbone.lines.size());
         }
         return backbone;
     }
 
-    private void fixAddMissingLines() {
-        // Connect "PONTE" - "M.PON" adding the lines "PONTE" - "REALT"
-        fixAddMissingLine(network.getLine("PONTEL61REALT"));
-        fixAddMissingLine(network.getLine("PONTEL62REALT"));
+    // Joins the islands of the backbone with the lines of the shortest paths between them, by impedance, at lower voltages
+    // Islands are found with a union-find over substations. Then a Dijkstra from all backbone substations at once gives,
+    // for every substation, its nearest island and the path to it. Each line between substations reached from different
+    // islands is a candidate link, with the length of the path through it. The shortest candidates joining islands
+    // not yet joined are kept (Kruskal) and the lines of their paths added to the backbone. O(m log m) for m lines
+    private void connectBackboneIslands() {
+        Map<String, Integer> substationIndex = new HashMap<>();
+        int[] end1 = new int[lines.size()];
+        int[] end2 = new int[lines.size()];
+        double[] length = new double[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            end1[i] = substationIndex.computeIfAbsent(substationId(line.getTerminal1()), k -> substationIndex.size());
+            end2[i] = substationIndex.computeIfAbsent(substationId(line.getTerminal2()), k -> substationIndex.size());
+            double z = Math.hypot(line.getR(), line.getX());
+            length[i] = Double.isFinite(z) ? Math.max(z, 1e-6) : 1.0;
+        }
+        List<int[]> hvdcEnds = new ArrayList<>();
+        for (HvdcLine hvdcLine : computeBackboneHvdcLines()) {
+            hvdcEnds.add(new int[]{
+                substationIndex.computeIfAbsent(substationId(hvdcLine.getConverterStation1().getTerminal()), k -> substationIndex.size()),
+                substationIndex.computeIfAbsent(substationId(hvdcLine.getConverterStation2().getTerminal()), k -> substationIndex.size())
+            });
+        }
+        int n = substationIndex.size();
+
+        UnionFind islands = new UnionFind(n);
+        boolean[] inBackbone = new boolean[n];
+        for (int i = backboneLines.nextSetBit(0); i >= 0; i = backboneLines.nextSetBit(i + 1)) {
+            islands.union(end1[i], end2[i]);
+            inBackbone[end1[i]] = inBackbone[end2[i]] = true;
+        }
+        for (int[] ends : hvdcEnds) {
+            islands.union(ends[0], ends[1]);
+            inBackbone[ends[0]] = inBackbone[ends[1]] = true;
+        }
+        int islandCount = 0;
+        for (int s = 0; s < n; s++) {
+            if (inBackbone[s] && islands.find(s) == s) {
+                islandCount++;
+            }
+        }
+        System.out.println("  Backbone islands           = " + islandCount);
+        if (islandCount <= 1) {
+            return;
+        }
+
+        // Adjacency of substations through lines, in compressed rows
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < lines.size(); i++) {
+            offsets[end1[i] + 1]++;
+            offsets[end2[i] + 1]++;
+        }
+        for (int s = 0; s < n; s++) {
+            offsets[s + 1] += offsets[s];
+        }
+        int[] adjacentLines = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < lines.size(); i++) {
+            adjacentLines[fill[end1[i]]++] = i;
+            adjacentLines[fill[end2[i]]++] = i;
+        }
+
+        // Dijkstra from all the backbone substations
+        double[] distance = new double[n];
+        int[] island = new int[n];
+        int[] pathLine = new int[n];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(island, -1);
+        Arrays.fill(pathLine, -1);
+        PriorityQueue<double[]> queue = new PriorityQueue<>(Comparator.comparingDouble(e -> e[0]));
+        for (int s = 0; s < n; s++) {
+            if (inBackbone[s]) {
+                distance[s] = 0;
+                island[s] = islands.find(s);
+                queue.add(new double[]{0, s});
+            }
+        }
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int s = (int) entry[1];
+            if (entry[0] > distance[s]) {
+                continue;
+            }
+            for (int k = offsets[s]; k < offsets[s + 1]; k++) {
+                int i = adjacentLines[k];
+                int t = end1[i] == s ? end2[i] : end1[i];
+                double d = distance[s] + length[i];
+                if (d < distance[t]) {
+                    distance[t] = d;
+                    island[t] = island[s];
+                    pathLine[t] = i;
+                    queue.add(new double[]{d, t});
+                }
+            }
+        }
+
+        // Candidate links, shortest first, each one joins the islands of its two ends
+        List<Integer> candidates = new ArrayList<>();
+        double[] candidateLength = new double[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            if (island[end1[i]] >= 0 && island[end2[i]] >= 0 && island[end1[i]] != island[end2[i]]) {
+                candidateLength[i] = distance[end1[i]] + length[i] + distance[end2[i]];
+                candidates.add(i);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(i -> candidateLength[i]));
+        int joined = 0;
+        int added = 0;
+        for (int i : candidates) {
+            if (islands.union(island[end1[i]], island[end2[i]])) {
+                joined++;
+                added += addPathToBackbone(i, end1[i], end2[i], pathLine, end1, end2);
+            }
+        }
+        System.out.println("  Backbone islands joined    = " + joined + ", lines added = " + added
+                + (islandCount - joined > 1 ? ", islands left, not connected by any line = " + (islandCount - joined) : ""));
+    }
 
-        // Connect ".TDCT 6_site"
-        fixAddMissingLine(network.getLine(".CTLA 6 Z.CTL 1"));
-        fixAddMissingLine(network.getLine("VALLOL61Z.CTL"));
-        fixAddMissingLine(network.getLine("PRESSL61VALLO"));
-        fixAddMissingLine(network.getLine("CORNIL61PRESS"));
+    // The line and the paths from both its ends back to the backbone
+    private int addPathToBackbone(int line, int s1, int s2, int[] pathLine, int[] end1, int[] end2) {
+        int added = backboneLines.get(line) ? 0 : 1;
+        backboneLines.set(line);
+        for (int s : new int[]{s1, s2}) {
+            while (pathLine[s] >= 0 && !backboneLines.get(pathLine[s])) {
+                int i = pathLine[s];
+                backboneLines.set(i);
+                added++;
+                s = end1[i] == s ? end2[i] : end1[i];
+            }
+        }
+        return added;
     }
 
-    private void fixAddMissingLine(Line line) {
-        if (line != null) {
-            backbone.lines.add(line);
+    private static final class UnionFind {
+        private final int[] parent;
+        private final byte[] rank;
+
+        UnionFind(int n) {
+            parent = new int[n];
+            rank = new byte[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = i;
+            }
+        }
+
+        int find(int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        // False if already in the same set
+        boolean union(int i, int j) {
+            int ri = find(i);
+            int rj = find(j);
+            if (ri == rj) {
+                return false;
+            }
+            if (rank[ri] < rank[rj]) {
+                parent[ri] = rj;
+            } else if (rank[ri] > rank[rj]) {
+                parent[rj] = ri;
+            } else {
+                parent[rj] = ri;
+                rank[ri]++;
+            }
+            return true;
         }
     }
 
-    private List<Line> computeBackboneLines() {
+    private BitSet computeBackboneLines() {
         System.out.println("Computing backbone");
         Set<Double> allNominalVoltages = allNominalVoltages(network);
         System.out.println("  All nominal voltages       = " + allNominalVoltages);
@@ -74,11 +264,13 @@ public class GridHierarchy {
         Set<Double> backboneNominalVoltages = backboneNominalVoltages(allNominalVoltages);
         System.out.println("  Backbone nominal voltages  = " + backboneNominalVoltages);
 
-        List<Line> lines = network.getLineStream()
-                .filter(l -> backboneNominalVoltages.contains(lineNominalVoltage(l)))
-                .collect(Collectors.toList());
-        System.out.println("  Backbone lines size        = " + lines.size());
-        return lines;
+        BitSet result = new BitSet(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            if (backboneNominalVoltages.contains(lineNominalVoltage(lines.get(i)))) {
+                result.set(i);
+            }
+        }
+        return result;
     }
 
     private List<HvdcLine> computeBackboneHvdcLines() {
@@ -89,14 +281,80 @@ public class GridHierarchy {
     public List<Line> belowBackbone() {
         // The backbone connects subnetworks, but the word subnetwork has a specific meaning in IIDM
         System.out.println("Computing the lines below the backbone (lines not included in the backbone)");
-        Set<String> backboneLineIds = backbone().lines.stream().map(Line::getId).collect(Collectors.toUnmodifiableSet());
-        List<Line> subNetworksLines = network.getLineStream()
-                .filter(line -> !backboneLineIds.contains(line))
-                .collect(Collectors.toList());
+        backbone();
+        List<Line> subNetworksLines = linesOf(backboneLines, false);
         System.out.println("  belowBackbone lines size     = " + subNetworksLines.size());
         return subNetworksLines;
     }
 
+    // Lines with their bit set, or clear, in index order
+    private List<Line> linesOf(BitSet bits, boolean set) {
+        List<Line> result = new ArrayList<>();
+        int i = set ? bits.nextSetBit(0) : bits.nextClearBit(0);
+        while (i >= 0 && i < lines.size()) {
+            result.add(lines.get(i));
+            i = set ? bits.nextSetBit(i + 1) : bits.nextClearBit(i + 1);
+        }
+        return result;
+    }
+
+    // Lower bounds in decreasing order, voltages below the last one go to the last tier
+    public void setTierMinNominalVoltages(double... tierMinNominalVoltages) {
+        if (tierMinNominalVoltages.length == 0) {
+            throw new IllegalArgumentException("At least one tier required");
+        }
+        for (int k = 1; k < tierMinNominalVoltages.length; k++) {
+            if (tierMinNominalVoltages[k] >= tierMinNominalVoltages[k - 1]) {
+                throw new IllegalArgumentException("Tier lower bounds must be decreasing " + Arrays.toString(tierMinNominalVoltages));
+            }
+        }
+        this.tierMinNominalVoltages = tierMinNominalVoltages.clone();
+        tiers = null;
+    }
+
+    public int tierOf(double nominalVoltage) {
+        for (int k = 0; k < tierMinNominalVoltages.length; k++) {
+            if (nominalVoltage >= tierMinNominalVoltages[k]) {
+                return k;
+            }
+        }
+        return tierMinNominalVoltages.length - 1;
+    }
+
+    private int tierOf(Terminal... terminals) {
+        int tier = 0;
+        for (Terminal t : terminals) {
+            tier = Math.max(tier, tierOf(t.getVoltageLevel().getNominalV()));
+        }
+        return tier;
+    }
+
+    // Computed once, a single pass over each kind of element
+    public List<Tier> tiers() {
+        if (tiers == null) {
+            List<Tier> result = new ArrayList<>();
+            for (int k = 0; k < tierMinNominalVoltages.length; k++) {
+                result.add(new Tier(k, tierMinNominalVoltages[k]));
+            }
+            network.getLineStream().forEach(l -> result.get(tierOf(l.getTerminal1(), l.getTerminal2())).lines.add(l));
+            network.getTieLineStream().forEach(l -> result.get(tierOf(l.getTerminal1(), l.getTerminal2())).tieLines.add(l));
+            network.getTwoWindingsTransformerStream().forEach(t -> result.get(tierOf(t.getTerminal1(), t.getTerminal2())).twoWindingsTransformers.add(t));
+            network.getThreeWindingsTransformerStream().forEach(t -> result.get(tierOf(t.getLeg1().getTerminal(), t.getLeg2().getTerminal(), t.getLeg3().getTerminal()))
+                    .threeWindingsTransformers.add(t));
+            network.getHvdcLineStream().forEach(l -> result.get(tierOf(l.getConverterStation1().getTerminal(), l.getConverterStation2().getTerminal()))
+                    .hvdcLines.add(l));
+            System.out.println("Voltage tiers");
+            for (Tier tier : result) {
+                System.out.println("  Tier " + tier.index + " from " + tier.minNominalVoltage + " kV : lines = " + tier.lines.size()
+                        + ", tie lines = " + tier.tieLines.size()
+                        + ", transformers = " + (tier.twoWindingsTransformers.size() + tier.threeWindingsTransformers.size())
+                        + ", HVDC lines = " + tier.hvdcLines.size());
+            }
+            tiers = result;
+        }
+        return tiers;
+    }
+
     private static Set<Double> allNominalVoltages(Network network) {
         return network.getVoltageLevelStream().map(VoltageLevel::getNominalV).collect(Collectors.toSet());
     }
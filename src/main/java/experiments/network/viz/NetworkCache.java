@@ -0,0 +1,439 @@
+package experiments.network.viz;
+
+import com.powsybl.iidm.network.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// Cache of networks read from files, as compact binary snapshots with only what the diagrams need:
+// substations, voltage levels, ends and impedances of branches and HVDC lines,
+// and the active power of loads and generators summed by voltage level.
+// The snapshot of a file is named after the hash of its content, it is written the first time the file is read
+// and memory mapped the next times. The network rebuilt from a snapshot has a single bus per voltage level
+// and one load and one generator per voltage level at most.
+// Folder from -Dviz.cache=..., target/viz-cache by default, -Dviz.cache=none reads the files every time
+
+public final class NetworkCache {
+
+    private static final int MAGIC = 0x4e56495a;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String CACHE_FOLDER = System.getProperty("viz.cache", "target/viz-cache");
+
+    private NetworkCache() {
+    }
+
+    public static Network read(Path file) {
+        if (CACHE_FOLDER.equals("none")) {
+            return Network.read(file);
+        }
+        try {
+            long t0 = System.currentTimeMillis();
+            Path snapshot = Paths.get(CACHE_FOLDER).resolve(hash(file) + ".snapshot");
+            if (Files.exists(snapshot)) {
+                Network network = readSnapshot(snapshot);
+                if (network != null) {
+                    System.out.println("Network " + file + " read from snapshot " + snapshot + " in " + (System.currentTimeMillis() - t0) + " ms");
+                    return network;
+                }
+                System.out.println("Snapshot " + snapshot + " has an old format, it will be written again");
+            }
+            Network network = Network.read(file);
+            System.out.println("Network " + file + " read in " + (System.currentTimeMillis() - t0) + " ms");
+            writeSnapshot(network, snapshot);
+            return network;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        try (InputStream input = new DigestInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE), digest)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (input.read(buffer) >= 0) {
+                // Only reading for the digest
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Written to a temporary file and moved, concurrent readers of the same file never see a partial snapshot
+    static void writeSnapshot(Network network, Path snapshot) throws IOException {
+        Files.createDirectories(snapshot.getParent());
+        Path tmp = Files.createTempFile(snapshot.getParent(), "snapshot", ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+            write(network, output);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void write(Network network, DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        writeString(output, network.getId());
+
+        List<Substation> substations = network.getSubstationStream().toList();
+        Map<String, Integer> substationIndex = new HashMap<>();
+        output.writeInt(substations.size());
+        for (Substation substation : substations) {
+            substationIndex.put(substation.getId(), substationIndex.size());
+            writeString(output, substation.getId());
+            writeString(output, substation.getOptionalName().orElse(null));
+            writeString(output, substation.getCountry().map(Country::name).orElse(null));
+        }
+
+        List<VoltageLevel> voltageLevels = network.getVoltageLevelStream().toList();
+        Map<String, Integer> vlIndex = new HashMap<>();
+        output.writeInt(voltageLevels.size());
+        for (VoltageLevel vl : voltageLevels) {
+            vlIndex.put(vl.getId(), vlIndex.size());
+            writeString(output, vl.getId());
+            writeString(output, vl.getOptionalName().orElse(null));
+            output.writeInt(vl.getSubstation().map(s -> substationIndex.get(s.getId())).orElse(-1));
+            output.writeDouble(vl.getNominalV());
+        }
+
+        List<Line> lines = network.getLineStream().toList();
+        output.writeInt(lines.size());
+        for (Line line : lines) {
+            writeIdentifiable(output, line);
+            output.writeInt(vlIndex.get(line.getTerminal1().getVoltageLevel().getId()));
+            output.writeInt(vlIndex.get(line.getTerminal2().getVoltageLevel().getId()));
+            output.writeDouble(line.getR());
+            output.writeDouble(line.getX());
+        }
+
+        List<TieLine> tieLines = network.getTieLineStream().toList();
+        output.writeInt(tieLines.size());
+        for (TieLine tieLine : tieLines) {
+            writeIdentifiable(output, tieLine);
+            for (DanglingLine dl : List.of(tieLine.getDanglingLine1(), tieLine.getDanglingLine2())) {
+                writeString(output, dl.getId());
+                output.writeInt(vlIndex.get(dl.getTerminal().getVoltageLevel().getId()));
+                output.writeDouble(dl.getR());
+                output.writeDouble(dl.getX());
+            }
+        }
+
+        List<TwoWindingsTransformer> twoWindingsTransformers = network.getTwoWindingsTransformerStream().toList();
+        output.writeInt(twoWindingsTransformers.size());
+        for (TwoWindingsTransformer t : twoWindingsTransformers) {
+            writeIdentifiable(output, t);
+            output.writeInt(vlIndex.get(t.getTerminal1().getVoltageLevel().getId()));
+            output.writeInt(vlIndex.get(t.getTerminal2().getVoltageLevel().getId()));
+            output.writeDouble(t.getR());
+            output.writeDouble(t.getX());
+            output.writeDouble(t.getRatedU1());
+            output.writeDouble(t.getRatedU2());
+        }
+
+        List<ThreeWindingsTransformer> threeWindingsTransformers = network.getThreeWindingsTransformerStream().toList();
+        output.writeInt(threeWindingsTransformers.size());
+        for (ThreeWindingsTransformer t : threeWindingsTransformers) {
+            writeIdentifiable(output, t);
+            output.writeDouble(t.getRatedU0());
+            for (ThreeWindingsTransformer.Leg leg : List.of(t.getLeg1(), t.getLeg2(), t.getLeg3())) {
+                output.writeInt(vlIndex.get(leg.getTerminal().getVoltageLevel().getId()));
+                output.writeDouble(leg.getR());
+                output.writeDouble(leg.getX());
+                output.writeDouble(leg.getRatedU());
+            }
+        }
+
+        List<HvdcLine> hvdcLines = network.getHvdcLineStream().toList();
+        output.writeInt(hvdcLines.size());
+        for (HvdcLine hvdcLine : hvdcLines) {
+            writeIdentifiable(output, hvdcLine);
+            for (HvdcConverterStation<?> cs : List.of(hvdcLine.getConverterStation1(), hvdcLine.getConverterStation2())) {
+                writeString(output, cs.getId());
+                output.writeInt(vlIndex.get(cs.getTerminal().getVoltageLevel().getId()));
+            }
+            output.writeDouble(hvdcLine.getR());
+            output.writeDouble(hvdcLine.getNominalV());
+            output.writeDouble(hvdcLine.getMaxP());
+        }
+
+        // Undefined values are left out of the sums, a rebuilt network can not have them
+        double[] loads = new double[voltageLevels.size()];
+        double[] generation = new double[voltageLevels.size()];
+        for (Load load : network.getLoads()) {
+            if (Double.isFinite(load.getP0())) {
+                loads[vlIndex.get(load.getTerminal().getVoltageLevel().getId())] += load.getP0();
+            }
+        }
+        for (Generator generator : network.getGenerators()) {
+            if (Double.isFinite(generator.getTargetP())) {
+                generation[vlIndex.get(generator.getTerminal().getVoltageLevel().getId())] += generator.getTargetP();
+            }
+        }
+        for (int k = 0; k < voltageLevels.size(); k++) {
+            output.writeDouble(loads[k]);
+            output.writeDouble(generation[k]);
+        }
+    }
+
+    private static void writeIdentifiable(DataOutputStream output, Identifiable<?> identifiable) throws IOException {
+        writeString(output, identifiable.getId());
+        writeString(output, identifiable.getOptionalName().orElse(null));
+    }
+
+    // Length and UTF-8 bytes, length -1 for null
+    private static void writeString(DataOutputStream output, String s) throws IOException {
+        if (s == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    // Null if the snapshot was written with another version of the format
+    static Network readSnapshot(Path snapshot) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshot)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        Network network = Network.create(readString(buffer), "snapshot");
+
+        Substation[] substations = new Substation[buffer.getInt()];
+        for (int k = 0; k < substations.length; k++) {
+            String id = readString(buffer);
+            String name = readString(buffer);
+            String country = readString(buffer);
+            substations[k] = network.newSubstation()
+                    .setId(id)
+                    .setName(name)
+                    .setCountry(country != null ? Country.valueOf(country) : null)
+                    .add();
+        }
+
+        VoltageLevel[] voltageLevels = new VoltageLevel[buffer.getInt()];
+        for (int k = 0; k < voltageLevels.length; k++) {
+            String id = readString(buffer);
+            String name = readString(buffer);
+            int substation = buffer.getInt();
+            VoltageLevelAdder adder = substation >= 0 ? substations[substation].newVoltageLevel() : network.newVoltageLevel();
+            VoltageLevel vl = adder
+                    .setId(id)
+                    .setName(name)
+                    .setNominalV(buffer.getDouble())
+                    .setTopologyKind(TopologyKind.BUS_BREAKER)
+                    .add();
+            vl.getBusBreakerView().newBus()
+                    .setId(busId(vl))
+                    .add();
+            voltageLevels[k] = vl;
+        }
+
+        int lineCount = buffer.getInt();
+        for (int k = 0; k < lineCount; k++) {
+            String id = readString(buffer);
+            String name = readString(buffer);
+            VoltageLevel vl1 = voltageLevels[buffer.getInt()];
+            VoltageLevel vl2 = voltageLevels[buffer.getInt()];
+            network.newLine()
+                    .setId(id)
+                    .setName(name)
+                    .setVoltageLevel1(vl1.getId())
+                    .setBus1(busId(vl1))
+                    .setConnectableBus1(busId(vl1))
+                    .setVoltageLevel2(vl2.getId())
+                    .setBus2(busId(vl2))
+                    .setConnectableBus2(busId(vl2))
+                    .setR(buffer.getDouble())
+                    .setX(buffer.getDouble())
+                    .setG1(0)
+                    .setB1(0)
+                    .setG2(0)
+                    .setB2(0)
+                    .add();
+        }
+
+        int tieLineCount = buffer.getInt();
+        for (int k = 0; k < tieLineCount; k++) {
+            String id = readString(buffer);
+            String name = readString(buffer);
+            DanglingLine dl1 = readDanglingLine(buffer, voltageLevels);
+            DanglingLine dl2 = readDanglingLine(buffer, voltageLevels);
+            network.newTieLine()
+                    .setId(id)
+                    .setName(name)
+                    .setDanglingLine1(dl1.getId())
+                    .setDanglingLine2(dl2.getId())
+                    .add();
+        }
+
+        int twoWindingsTransformerCount = buffer.getInt();
+        for (int k = 0; k < twoWindingsTransformerCount; k++) {
+            String id = readString(buffer);
+            String name = readString(buffer);
+            VoltageLevel vl1 = voltageLevels[buffer.getInt()];
+            VoltageLevel vl2 = voltageLevels[buffer.getInt()];
+            substation(vl1, id).newTwoWindingsTransformer()
+                    .setId(id)
+                    .setName(name)
+                    .setVoltageLevel1(vl1.getId())
+                    .setBus1(busId(vl1))
+                    .setConnectableBus1(busId(vl1))
+                    .setVoltageLevel2(vl2.getId())
+                    .setBus2(busId(vl2))
+                    .setConnectableBus2(busId(vl2))
+                    .setR(buffer.getDouble())
+                    .setX(buffer.getDouble())
+                    .setG(0)
+                    .setB(0)
+                    .setRatedU1(buffer.getDouble())
+                    .setRatedU2(buffer.getDouble())
+                    .add();
+        }
+
+        int threeWindingsTransformerCount = buffer.getInt();
+        for (int k = 0; k < threeWindingsTransformerCount; k++) {
+            String id = readString(buffer);
+            String name = readString(buffer);
+            double ratedU0 = buffer.getDouble();
+            ThreeWindingsTransformerAdder adder = null;
+            for (int leg = 1; leg <= 3; leg++) {
+                VoltageLevel vl = voltageLevels[buffer.getInt()];
+                if (adder == null) {
+                    adder = substation(vl, id).newThreeWindingsTransformer()
+                            .setId(id)
+                            .setName(name)
+                            .setRatedU0(ratedU0);
+                }
+                ThreeWindingsTransformerAdder.LegAdder legAdder = switch (leg) {
+                    case 1 -> adder.newLeg1();
+                    case 2 -> adder.newLeg2();
+                    default -> adder.newLeg3();
+                };
+                legAdder.setVoltageLevel(vl.getId())
+                        .setBus(busId(vl))
+                        .setConnectableBus(busId(vl))
+                        .setR(buffer.getDouble())
+                        .setX(buffer.getDouble())
+                        .setRatedU(buffer.getDouble())
+                        .setG(0)
+                        .setB(0)
+                        .add();
+            }
+            adder.add();
+        }
+
+        int hvdcLineCount = buffer.getInt();
+        for (int k = 0; k < hvdcLineCount; k++) {
+            String id = readString(buffer);
+            String name = readString(buffer);
+            VscConverterStation cs1 = readConverterStation(buffer, voltageLevels);
+            VscConverterStation cs2 = readConverterStation(buffer, voltageLevels);
+            network.newHvdcLine()
+                    .setId(id)
+                    .setName(name)
+                    .setR(buffer.getDouble())
+                    .setNominalV(buffer.getDouble())
+                    .setMaxP(buffer.getDouble())
+                    .setActivePowerSetpoint(0)
+                    .setConvertersMode(HvdcLine.ConvertersMode.SIDE_1_RECTIFIER_SIDE_2_INVERTER)
+                    .setConverterStationId1(cs1.getId())
+                    .setConverterStationId2(cs2.getId())
+                    .add();
+        }
+
+        for (VoltageLevel vl : voltageLevels) {
+            double load = buffer.getDouble();
+            double generation = buffer.getDouble();
+            if (load != 0) {
+                vl.newLoad()
+                        .setId(vl.getId() + "#LOAD")
+                        .setBus(busId(vl))
+                        .setConnectableBus(busId(vl))
+                        .setP0(load)
+                        .setQ0(0)
+                        .add();
+            }
+            if (generation != 0) {
+                vl.newGenerator()
+                        .setId(vl.getId() + "#GEN")
+                        .setBus(busId(vl))
+                        .setConnectableBus(busId(vl))
+                        .setMinP(Math.min(0, generation))
+                        .setMaxP(Math.max(0, generation))
+                        .setTargetP(generation)
+                        .setTargetV(vl.getNominalV())
+                        .setVoltageRegulatorOn(true)
+                        .add();
+            }
+        }
+        return network;
+    }
+
+    private static DanglingLine readDanglingLine(ByteBuffer buffer, VoltageLevel[] voltageLevels) {
+        String id = readString(buffer);
+        VoltageLevel vl = voltageLevels[buffer.getInt()];
+        return vl.newDanglingLine()
+                .setId(id)
+                .setBus(busId(vl))
+                .setConnectableBus(busId(vl))
+                .setR(buffer.getDouble())
+                .setX(buffer.getDouble())
+                .setG(0)
+                .setB(0)
+                .setP0(0)
+                .setQ0(0)
+                .add();
+    }
+
+    private static VscConverterStation readConverterStation(ByteBuffer buffer, VoltageLevel[] voltageLevels) {
+        String id = readString(buffer);
+        VoltageLevel vl = voltageLevels[buffer.getInt()];
+        return vl.newVscConverterStation()
+                .setId(id)
+                .setBus(busId(vl))
+                .setConnectableBus(busId(vl))
+                .setLossFactor(0)
+                .setVoltageRegulatorOn(false)
+                .setReactivePowerSetpoint(0)
+                .add();
+    }
+
+    private static Substation substation(VoltageLevel vl, String transformerId) {
+        return vl.getSubstation().orElseThrow(() -> new RuntimeException("Transformer " + transformerId + " without substation"));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String busId(VoltageLevel vl) {
+        return vl.getId() + "#BUS";
+    }
+}
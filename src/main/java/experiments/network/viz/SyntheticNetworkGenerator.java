@@ -0,0 +1,506 @@
+package experiments.network.viz;
+
+import com.powsybl.iidm.network.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Synthetic networks with the structure of a transmission grid, to test at any scale without input files
+//   - substations are spread over a square, split in vertical strips, one area (country) per strip
+//   - 400 kV backbone substations, meshed: each one is linked to its nearest already placed backbone substations
+//   - 225 kV substations, mostly radial with some loops, linked to the nearest 225 kV voltage level
+//   - 63 kV distribution substations, radial, hanging from 225 kV substations
+//   - 400/225 kV transformation with 2 winding transformers or 3 winding transformers with a 20 kV tertiary,
+//     225/63 kV transformation with 2 winding transformers
+//   - tie lines between neighbor areas and HVDC links between distant backbone substations
+// Loads are connected at 63 kV, generation at 400 kV balances the total load
+
+public class SyntheticNetworkGenerator {
+
+    private static final double BACKBONE_NOMINAL_V = 400;
+    private static final double SUBTRANSMISSION_NOMINAL_V = 225;
+    private static final double DISTRIBUTION_NOMINAL_V = 63;
+    private static final double TERTIARY_NOMINAL_V = 20;
+    private static final double HVDC_NOMINAL_V = 320;
+    // Mean distance between substations, gives the size of the square
+    private static final double SUBSTATION_SPACING_KM = 15;
+    // Lines are longer than the straight distance between their substations
+    private static final double LINE_DETOUR = 1.2;
+    private static final Country[] COUNTRIES = {Country.FR, Country.BE, Country.DE, Country.ES, Country.PT};
+
+    private int substationCount = 1000;
+    private int areaCount = 2;
+    private double backboneFraction = 0.1;
+    private double subtransmissionFraction = 0.3;
+    private int backboneLinks = 2;
+    private double subtransmissionLoopProbability = 0.2;
+    private double threeWindingsTransformerFraction = 0.3;
+    private double generatorFraction = 0.5;
+    private int tieLinesPerBorder = 3;
+    private int hvdcLineCount = 2;
+    private long seed = 1;
+
+    private Network network;
+    private Random random;
+    private double side;
+
+    private static final class Site {
+        final Substation substation;
+        final double x;
+        final double y;
+        VoltageLevel vl400;
+        VoltageLevel vl225;
+        VoltageLevel vl63;
+
+        Site(Substation substation, double x, double y) {
+            this.substation = substation;
+            this.x = x;
+            this.y = y;
+        }
+
+        double distance(Site other) {
+            return Math.sqrt((x - other.x) * (x - other.x) + (y - other.y) * (y - other.y));
+        }
+    }
+
+    private static final class Area {
+        final Country country;
+        final double minX;
+        final double maxX;
+        final List<Site> backbone = new ArrayList<>();
+        final List<Site> subtransmission = new ArrayList<>();
+        final List<Site> distribution = new ArrayList<>();
+
+        Area(Country country, double minX, double maxX) {
+            this.country = country;
+            this.minX = minX;
+            this.maxX = maxX;
+        }
+    }
+
+    public Network generate() {
+        if (substationCount < 2 * areaCount) {
+            throw new IllegalArgumentException("At least two substations per area required, " + substationCount + " substations, " + areaCount + " areas");
+        }
+        if (areaCount > COUNTRIES.length) {
+            throw new IllegalArgumentException("At most " + COUNTRIES.length + " areas");
+        }
+        long t0 = System.currentTimeMillis();
+        network = Network.create("synthetic-" + substationCount + "-" + seed, "synthetic");
+        random = new Random(seed);
+        side = Math.sqrt(substationCount) * SUBSTATION_SPACING_KM;
+
+        List<Area> areas = new ArrayList<>();
+        for (int a = 0; a < areaCount; a++) {
+            int count = substationCount / areaCount + (a < substationCount % areaCount ? 1 : 0);
+            Area area = new Area(COUNTRIES[a], a * side / areaCount, (a + 1) * side / areaCount);
+            createSubstations(area, count);
+            createBackboneLines(area);
+            createSubtransmissionLines(area);
+            createDistributionLines(area);
+            areas.add(area);
+        }
+        for (int a = 0; a + 1 < areas.size(); a++) {
+            createTieLines(areas.get(a), areas.get(a + 1));
+        }
+        createHvdcLines(areas);
+        createLoadsAndGenerators(areas);
+
+        System.out.println("Synthetic network " + network.getId() + " generated in " + (System.currentTimeMillis() - t0) + " ms");
+        System.out.println("    substations = " + network.getSubstationCount() + ", voltage levels = " + network.getVoltageLevelCount()
+                + ", lines = " + network.getLineCount());
+        Network result = network;
+        network = null;
+        return result;
+    }
+
+    private void createSubstations(Area area, int count) {
+        int backboneCount = Math.max(2, (int) Math.round(backboneFraction * count));
+        int subtransmissionCount = Math.min(count - backboneCount, Math.max(1, (int) Math.round(subtransmissionFraction * count)));
+        for (int i = 0; i < count; i++) {
+            String id = area.country + "_S" + i;
+            Substation substation = network.newSubstation()
+                    .setId(id)
+                    .setCountry(area.country)
+                    .add();
+            Site site = new Site(substation,
+                    area.minX + random.nextDouble() * (area.maxX - area.minX),
+                    random.nextDouble() * side);
+            if (i < backboneCount) {
+                site.vl400 = createVoltageLevel(substation, BACKBONE_NOMINAL_V);
+                site.vl225 = createVoltageLevel(substation, SUBTRANSMISSION_NOMINAL_V);
+                if (random.nextDouble() < threeWindingsTransformerFraction) {
+                    VoltageLevel tertiary = createVoltageLevel(substation, TERTIARY_NOMINAL_V);
+                    create3wTransformer(substation, site.vl400, site.vl225, tertiary);
+                } else {
+                    create2wTransformer(substation, site.vl400, site.vl225, 600);
+                }
+                area.backbone.add(site);
+            } else if (i < backboneCount + subtransmissionCount) {
+                site.vl225 = createVoltageLevel(substation, SUBTRANSMISSION_NOMINAL_V);
+                site.vl63 = createVoltageLevel(substation, DISTRIBUTION_NOMINAL_V);
+                create2wTransformer(substation, site.vl225, site.vl63, 100);
+                area.subtransmission.add(site);
+            } else {
+                site.vl63 = createVoltageLevel(substation, DISTRIBUTION_NOMINAL_V);
+                area.distribution.add(site);
+            }
+        }
+    }
+
+    private void createBackboneLines(Area area) {
+        SiteIndex index = new SiteIndex();
+        for (Site site : area.backbone) {
+            for (Site neighbor : index.nearest(site, backboneLinks)) {
+                createLine(site.vl400, neighbor.vl400, site.distance(neighbor));
+            }
+            index.add(site);
+        }
+    }
+
+    private void createSubtransmissionLines(Area area) {
+        SiteIndex index = new SiteIndex();
+        area.backbone.forEach(index::add);
+        for (Site site : area.subtransmission) {
+            int links = random.nextDouble() < subtransmissionLoopProbability ? 2 : 1;
+            for (Site neighbor : index.nearest(site, links)) {
+                createLine(site.vl225, neighbor.vl225, site.distance(neighbor));
+            }
+            index.add(site);
+        }
+    }
+
+    private void createDistributionLines(Area area) {
+        SiteIndex index = new SiteIndex();
+        area.subtransmission.forEach(index::add);
+        for (Site site : area.distribution) {
+            Site neighbor = index.nearest(site, 1).get(0);
+            createLine(site.vl63, neighbor.vl63, site.distance(neighbor));
+            index.add(site);
+        }
+    }
+
+    // Between the backbone substations closest to the border
+    private void createTieLines(Area left, Area right) {
+        List<Site> candidates = new ArrayList<>(left.backbone);
+        candidates.sort(Comparator.comparingDouble(s -> left.maxX - s.x));
+        SiteIndex index = new SiteIndex();
+        right.backbone.forEach(index::add);
+        for (int k = 0; k < Math.min(tieLinesPerBorder, candidates.size()); k++) {
+            Site site1 = candidates.get(k);
+            Site site2 = index.nearest(site1, 1).get(0);
+            String xnode = "X" + left.country + right.country + k;
+            double length = LINE_DETOUR * Math.max(1, site1.distance(site2));
+            DanglingLine dl1 = createDanglingLine(site1.vl400, xnode + "_1", length / 2);
+            DanglingLine dl2 = createDanglingLine(site2.vl400, xnode + "_2", length / 2);
+            network.newTieLine()
+                    .setId(xnode)
+                    .setDanglingLine1(dl1.getId())
+                    .setDanglingLine2(dl2.getId())
+                    .add();
+        }
+    }
+
+    // Between random pairs of backbone substations at least a third of the grid size apart
+    private void createHvdcLines(List<Area> areas) {
+        List<Site> backbone = new ArrayList<>();
+        areas.forEach(area -> backbone.addAll(area.backbone));
+        int created = 0;
+        for (int attempt = 0; created < hvdcLineCount && attempt < 100 * hvdcLineCount; attempt++) {
+            Site site1 = backbone.get(random.nextInt(backbone.size()));
+            Site site2 = backbone.get(random.nextInt(backbone.size()));
+            if (site1.distance(site2) < side / 3) {
+                continue;
+            }
+            String id = "HVDC" + created;
+            VscConverterStation cs1 = createConverterStation(site1.vl400, id + "_CS1");
+            VscConverterStation cs2 = createConverterStation(site2.vl400, id + "_CS2");
+            network.newHvdcLine()
+                    .setId(id)
+                    .setR(0.01 * LINE_DETOUR * site1.distance(site2))
+                    .setNominalV(HVDC_NOMINAL_V)
+                    .setMaxP(1000)
+                    .setActivePowerSetpoint(500)
+                    .setConvertersMode(HvdcLine.ConvertersMode.SIDE_1_RECTIFIER_SIDE_2_INVERTER)
+                    .setConverterStationId1(cs1.getId())
+                    .setConverterStationId2(cs2.getId())
+                    .add();
+            created++;
+        }
+    }
+
+    private void createLoadsAndGenerators(List<Area> areas) {
+        double totalLoad = 0;
+        for (Area area : areas) {
+            List<Site> loadSites = new ArrayList<>(area.subtransmission);
+            loadSites.addAll(area.distribution);
+            for (Site site : loadSites) {
+                double p = 5 + 35 * random.nextDouble();
+                site.vl63.newLoad()
+                        .setId(site.vl63.getId() + "_LOAD")
+                        .setBus(busId(site.vl63))
+                        .setConnectableBus(busId(site.vl63))
+                        .setP0(p)
+                        .setQ0(0.3 * p)
+                        .add();
+                totalLoad += p;
+            }
+        }
+        List<Site> generatorSites = new ArrayList<>();
+        for (Area area : areas) {
+            for (Site site : area.backbone) {
+                if (random.nextDouble() < generatorFraction) {
+                    generatorSites.add(site);
+                }
+            }
+        }
+        if (generatorSites.isEmpty()) {
+            generatorSites.add(areas.get(0).backbone.get(0));
+        }
+        double[] shares = new double[generatorSites.size()];
+        double totalShares = 0;
+        for (int k = 0; k < shares.length; k++) {
+            shares[k] = 0.2 + random.nextDouble();
+            totalShares += shares[k];
+        }
+        for (int k = 0; k < shares.length; k++) {
+            VoltageLevel vl = generatorSites.get(k).vl400;
+            double p = totalLoad * shares[k] / totalShares;
+            vl.newGenerator()
+                    .setId(vl.getId() + "_GEN")
+                    .setBus(busId(vl))
+                    .setConnectableBus(busId(vl))
+                    .setMinP(0)
+                    .setMaxP(1.3 * p + 100)
+                    .setTargetP(p)
+                    .setTargetV(vl.getNominalV())
+                    .setVoltageRegulatorOn(true)
+                    .add();
+        }
+    }
+
+    private static String busId(VoltageLevel vl) {
+        return vl.getId() + "_BUS";
+    }
+
+    private static VoltageLevel createVoltageLevel(Substation substation, double nominalV) {
+        VoltageLevel vl = substation.newVoltageLevel()
+                .setId(substation.getId() + "_" + (int) nominalV)
+                .setNominalV(nominalV)
+                .setTopologyKind(TopologyKind.BUS_BREAKER)
+                .add();
+        vl.getBusBreakerView().newBus()
+                .setId(busId(vl))
+                .add();
+        return vl;
+    }
+
+    private void createLine(VoltageLevel vl1, VoltageLevel vl2, double distance) {
+        double length = LINE_DETOUR * Math.max(1, distance);
+        double nominalV = vl1.getNominalV();
+        // Typical overhead line parameters per km
+        double r = nominalV >= BACKBONE_NOMINAL_V ? 0.03 : nominalV >= SUBTRANSMISSION_NOMINAL_V ? 0.06 : 0.1;
+        double x = nominalV >= BACKBONE_NOMINAL_V ? 0.3 : 0.4;
+        network.newLine()
+                .setId(vl1.getId() + "-" + vl2.getId())
+                .setVoltageLevel1(vl1.getId())
+                .setBus1(busId(vl1))
+                .setConnectableBus1(busId(vl1))
+                .setVoltageLevel2(vl2.getId())
+                .setBus2(busId(vl2))
+                .setConnectableBus2(busId(vl2))
+                .setR(r * length)
+                .setX(x * length)
+                .setG1(0)
+                .setB1(0)
+                .setG2(0)
+                .setB2(0)
+                .add();
+    }
+
+    private DanglingLine createDanglingLine(VoltageLevel vl, String id, double length) {
+        return vl.newDanglingLine()
+                .setId(id)
+                .setBus(busId(vl))
+                .setConnectableBus(busId(vl))
+                .setR(0.03 * length)
+                .setX(0.3 * length)
+                .setG(0)
+                .setB(0)
+                .setP0(0)
+                .setQ0(0)
+                .add();
+    }
+
+    private static VscConverterStation createConverterStation(VoltageLevel vl, String id) {
+        return vl.newVscConverterStation()
+                .setId(id)
+                .setBus(busId(vl))
+                .setConnectableBus(busId(vl))
+                .setLossFactor(0.011f)
+                .setVoltageRegulatorOn(false)
+                .setReactivePowerSetpoint(0)
+                .add();
+    }
+
+    // Impedances referred to the low voltage side, 12 % short circuit voltage
+    private static void create2wTransformer(Substation substation, VoltageLevel vl1, VoltageLevel vl2, double ratedS) {
+        double x = 0.12 * vl2.getNominalV() * vl2.getNominalV() / ratedS;
+        substation.newTwoWindingsTransformer()
+                .setId(vl1.getId() + "-" + vl2.getId())
+                .setVoltageLevel1(vl1.getId())
+                .setBus1(busId(vl1))
+                .setConnectableBus1(busId(vl1))
+                .setVoltageLevel2(vl2.getId())
+                .setBus2(busId(vl2))
+                .setConnectableBus2(busId(vl2))
+                .setRatedU1(vl1.getNominalV())
+                .setRatedU2(vl2.getNominalV())
+                .setR(x / 50)
+                .setX(x)
+                .setG(0)
+                .setB(0)
+                .add();
+    }
+
+    // Impedances referred to the rated voltage of the star bus (the high voltage side)
+    private static void create3wTransformer(Substation substation, VoltageLevel vl1, VoltageLevel vl2, VoltageLevel vl3) {
+        double x = 0.12 * vl1.getNominalV() * vl1.getNominalV() / 600;
+        substation.newThreeWindingsTransformer()
+                .setId(substation.getId() + "_3WT")
+                .setRatedU0(vl1.getNominalV())
+                .newLeg1()
+                    .setVoltageLevel(vl1.getId())
+                    .setBus(busId(vl1))
+                    .setConnectableBus(busId(vl1))
+                    .setRatedU(vl1.getNominalV())
+                    .setR(x / 100)
+                    .setX(x / 2)
+                    .setG(0)
+                    .setB(0)
+                    .add()
+                .newLeg2()
+                    .setVoltageLevel(vl2.getId())
+                    .setBus(busId(vl2))
+                    .setConnectableBus(busId(vl2))
+                    .setRatedU(vl2.getNominalV())
+                    .setR(x / 100)
+                    .setX(x / 2)
+                    .setG(0)
+                    .setB(0)
+                    .add()
+                .newLeg3()
+                    .setVoltageLevel(vl3.getId())
+                    .setBus(busId(vl3))
+                    .setConnectableBus(busId(vl3))
+                    .setRatedU(vl3.getNominalV())
+                    .setR(x / 20)
+                    .setX(2 * x)
+                    .setG(0)
+                    .setB(0)
+                    .add()
+                .add();
+    }
+
+    // Uniform grid of buckets for nearest neighbor queries, the generator only needs a few neighbors per site
+    private final class SiteIndex {
+        private final double cellSize = 4 * SUBSTATION_SPACING_KM;
+        private final Map<Long, List<Site>> cells = new HashMap<>();
+        private int size = 0;
+
+        void add(Site site) {
+            cells.computeIfAbsent(key(cell(site.x), cell(site.y)), k -> new ArrayList<>()).add(site);
+            size++;
+        }
+
+        // Up to k sites, sorted by distance
+        List<Site> nearest(Site site, int k) {
+            List<Site> found = new ArrayList<>();
+            if (size == 0 || k <= 0) {
+                return found;
+            }
+            int cx = cell(site.x);
+            int cy = cell(site.y);
+            int maxRing = (int) Math.ceil(side / cellSize) + 1;
+            for (int ring = 0; ring <= maxRing; ring++) {
+                for (int i = cx - ring; i <= cx + ring; i++) {
+                    for (int j = cy - ring; j <= cy + ring; j++) {
+                        if (Math.max(Math.abs(i - cx), Math.abs(j - cy)) != ring) {
+                            continue;
+                        }
+                        List<Site> cell = cells.get(key(i, j));
+                        if (cell != null) {
+                            found.addAll(cell);
+                        }
+                    }
+                }
+                // Sites outside the rings visited are at least ring * cellSize away
+                if (found.size() >= k) {
+                    found.sort(Comparator.comparingDouble(site::distance));
+                    if (found.get(k - 1).distance(site) <= ring * cellSize) {
+                        break;
+                    }
+                }
+            }
+            found.sort(Comparator.comparingDouble(site::distance));
+            return found.subList(0, Math.min(k, found.size()));
+        }
+
+        private int cell(double v) {
+            return (int) Math.floor(v / cellSize);
+        }
+
+        private long key(int i, int j) {
+            return ((long) i << 32) | (j & 0xffffffffL);
+        }
+    }
+
+    public void setSubstationCount(int substationCount) {
+        this.substationCount = substationCount;
+    }
+
+    public void setAreaCount(int areaCount) {
+        this.areaCount = Math.max(1, areaCount);
+    }
+
+    public void setBackboneFraction(double backboneFraction) {
+        this.backboneFraction = backboneFraction;
+    }
+
+    public void setSubtransmissionFraction(double subtransmissionFraction) {
+        this.subtransmissionFraction = subtransmissionFraction;
+    }
+
+    // Lines from each new backbone substation to the nearest ones already placed, more than 1 gives a meshed backbone
+    public void setBackboneLinks(int backboneLinks) {
+        this.backboneLinks = Math.max(1, backboneLinks);
+    }
+
+    public void setSubtransmissionLoopProbability(double subtransmissionLoopProbability) {
+        this.subtransmissionLoopProbability = subtransmissionLoopProbability;
+    }
+
+    public void setThreeWindingsTransformerFraction(double threeWindingsTransformerFraction) {
+        this.threeWindingsTransformerFraction = threeWindingsTransformerFraction;
+    }
+
+    public void setGeneratorFraction(double generatorFraction) {
+        this.generatorFraction = generatorFraction;
+    }
+
+    public void setTieLinesPerBorder(int tieLinesPerBorder) {
+        this.tieLinesPerBorder = tieLinesPerBorder;
+    }
+
+    public void setHvdcLineCount(int hvdcLineCount) {
+        this.hvdcLineCount = hvdcLineCount;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -0,0 +1,28 @@
+package experiments.network.viz;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Change of topology to apply to a diagram already laid out: network elements switched off and on,
+// given by the id of a line, tie line, transformer or HVDC line of the network
+// Elements switched on that join new voltage levels also add their nodes
+
+public class TopologyChange {
+
+    public final Set<String> removedElementIds = new LinkedHashSet<>();
+    public final Set<String> addedElementIds = new LinkedHashSet<>();
+
+    public TopologyChange remove(String elementId) {
+        removedElementIds.add(elementId);
+        return this;
+    }
+
+    public TopologyChange add(String elementId) {
+        addedElementIds.add(elementId);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return removedElementIds.isEmpty() && addedElementIds.isEmpty();
+    }
+}
@@ -2,6 +2,7 @@ package experiments.network.viz;
 
 import com.powsybl.iidm.network.*;
 import experiments.network.viz.gephi.Gephi;
+import experiments.network.viz.gephi.PositionStore;
 import org.apache.commons.io.FileUtils;
 import org.gephi.appearance.api.*;
 import org.gephi.appearance.plugin.PartitionElementColorTransformer;
@@ -16,10 +17,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.*;
 import java.util.List;
 import java.util.function.Predicate;
 
-public class Viz {
+public class Viz implements AutoCloseable {
     // Colors from ENTSO-E map of Continental Europe
     private static final Color ENTSOE_BLUE = new Color(27, 78, 162);
     private static final Color ENTSOE_MAROON = new Color(169, 41, 71);
@@ -37,21 +39,67 @@ public class Viz {
 
     protected static final boolean EXPORT_GEXF = false;
     private static final boolean PERFORM_ADDITIONAL_EXPANSION_AFTER_LAYOUT = false;
+    // Bounds of the layout after a change of topology: hops around the change, nodes moved and iterations
+    private static final int INCREMENTAL_HOPS = 2;
+    private static final int INCREMENTAL_MAX_NODES = Integer.getInteger("viz.incremental.maxNodes", 200);
+    private static final int INCREMENTAL_ITERATIONS = 100;
+    // Iterations of the layout when starting from the positions of a previous run, -Dviz.warmstart.iterations=...
+    private static final int WARM_START_ITERATIONS = Integer.getInteger("viz.warmstart.iterations", 100);
 
     protected final Network network;
-    private final Predicate<VoltageLevel> voltageLevelFilter;
     private final Viz.WeightInterpretation weightInterpretation;
     protected final Gephi gephi;
     private final Column nominalVoltageColumn;
+    private final Column netActivePowerColumn;
+    private final Column absActivePowerColumn;
+    private final Column nodeNominalVoltageColumn;
+    private final Column substationColumn;
+    private final Column isDcColumn;
+    private final Column elementIdColumn;
+    private final Column multiplicityColumn;
+    private final Column memberIdsColumn;
+    private final Predicate<VoltageLevel> voltageLevelFilter;
+    private final GraphExtractor extractor;
+    // Nodes already added, by voltage level or substation id
+    private final Map<String, Node> nodesById = new HashMap<>();
+    private ExportFormat exportFormat = ExportFormat.PREVIEW_PDF;
+    // Graph built and styled, ready for layouts
+    private boolean prepared = false;
+    private PositionStore positionStore;
+    private GraphExtractor.Granularity granularity = GraphExtractor.Granularity.VOLTAGE_LEVEL;
+    private boolean mergeParallelEdges = GraphExtractor.DEFAULT_MERGE_PARALLEL_EDGES;
 
     public Viz(Network network, Predicate<VoltageLevel> voltageLevelFilter, boolean useWeights, Viz.WeightInterpretation weightInterpretation) {
         this.network = network;
-        this.voltageLevelFilter = voltageLevelFilter;
         this.weightInterpretation = weightInterpretation;
         gephi = new Gephi();
         gephi.setUseWeights(useWeights);
         addNetworkColumns();
         nominalVoltageColumn = gephi.model.getEdgeTable().getColumn("nominalVoltage");
+        netActivePowerColumn = gephi.model.getNodeTable().getColumn("netActivePower");
+        absActivePowerColumn = gephi.model.getNodeTable().getColumn("absActivePower");
+        nodeNominalVoltageColumn = gephi.model.getNodeTable().getColumn("nominalVoltage");
+        substationColumn = gephi.model.getNodeTable().getColumn("substation");
+        isDcColumn = gephi.model.getEdgeTable().getColumn("isDC");
+        elementIdColumn = gephi.model.getEdgeTable().getColumn("elementId");
+        multiplicityColumn = gephi.model.getEdgeTable().getColumn("multiplicity");
+        memberIdsColumn = gephi.model.getEdgeTable().getColumn("memberIds");
+        this.voltageLevelFilter = voltageLevelFilter;
+        extractor = new GraphExtractor(network, voltageLevelFilter, this::weight);
+    }
+
+    // A copy of the graph of another Viz, already built and styled, to lay it out with other settings
+    // The source keeps its graph, it must have been created using weights for the copy to have them
+    public Viz(Viz source, boolean useWeights) {
+        this(source.network, source.voltageLevelFilter, useWeights, source.weightInterpretation);
+        setGranularity(source.granularity);
+        setMergeParallelEdges(source.mergeParallelEdges);
+        source.prepareGraph();
+        gephi.copyGraph(source.gephi);
+        for (Node n : gephi.graph.getNodes()) {
+            nodesById.put((String) n.getId(), n);
+        }
+        prepared = true;
     }
 
     protected static void prepareOutputFolder(Path outputFolder) throws IOException {
@@ -60,17 +108,8 @@ public class Viz {
     }
 
     public void createDiagram(Path outputFolder, String name, Gephi.LayoutAlgorithm layoutAlgorithm) throws IOException, FontFormatException {
-        addLines(network.getLineStream().toList());
-        addTieLines(network.getTieLineStream().toList());
-        add2wTransformers(network.getTwoWindingsTransformerStream().toList());
-        add3wTransformers(network.getThreeWindingsTransformerStream().toList());
-        addDcLines(network.getHvdcLineStream().toList());
-
-        colorizeNodes();
-        sizeNodes();
-        colorizeEdges();
-
-        layoutAndExport(layoutAlgorithm, outputFolder, name);
+        layoutDiagram(layoutAlgorithm);
+        exportDiagram(outputFolder, name, layoutAlgorithm);
         if (PERFORM_ADDITIONAL_EXPANSION_AFTER_LAYOUT) {
             // In case we want to do an additional expansion
             String name1 = name + "-" + layoutAlgorithm.name();
@@ -78,16 +117,174 @@ public class Viz {
         }
     }
 
+    // Layout stage of createDiagram, warm started from the position store if there is one
+    public void layoutDiagram(Gephi.LayoutAlgorithm layoutAlgorithm) {
+        prepareGraph();
+        // Without any node of the previous run, as when the store is from another graph, the layout starts from scratch
+        if (positionStore != null && positionStore.exists() && gephi.warmStart(positionStore) > 0) {
+            // Only this layout is shortened, later ones on this Viz keep the configured iterations
+            int savedMaxIterations = gephi.getMaxIterations();
+            gephi.setMaxIterations(WARM_START_ITERATIONS);
+            try {
+                gephi.layout(layoutAlgorithm, false);
+            } finally {
+                gephi.setMaxIterations(savedMaxIterations);
+            }
+        } else {
+            gephi.layout(layoutAlgorithm, true);
+        }
+        if (positionStore != null) {
+            positionStore.save(gephi.graph);
+        }
+    }
+
+    // Export stage of createDiagram, only reads the graph
+    public void exportDiagram(Path outputFolder, String name, Gephi.LayoutAlgorithm layoutAlgorithm) throws IOException, FontFormatException {
+        if (EXPORT_GEXF) {
+            gephi.export(outputFolder.resolve(name + "-" + layoutAlgorithm + ".gexf"));
+        }
+        export(outputFolder, name + "-" + layoutAlgorithm);
+    }
+
+    public synchronized void prepareGraph() {
+        if (prepared) {
+            return;
+        }
+        buildGraph();
+
+        colorizeNodes();
+        sizeNodes();
+        colorizeEdges();
+        prepared = true;
+    }
+
+    public void buildGraph() {
+        load(extractor.extract());
+    }
+
     protected void layoutAndExport(Gephi.LayoutAlgorithm algorithm, Path outputFolder, String part) throws IOException, FontFormatException {
         layoutAndExport(algorithm, outputFolder, part, true);
     }
 
     protected void layoutAndExport(Gephi.LayoutAlgorithm algorithm, Path outputFolder, String part, boolean reset) throws IOException, FontFormatException {
         gephi.layout(algorithm, reset);
-        if (EXPORT_GEXF) {
-            gephi.export(outputFolder.resolve(part + "-" + algorithm + ".gexf"));
+        exportDiagram(outputFolder, part, algorithm);
+    }
+
+    protected void export(Path outputFolder, String name) throws IOException, FontFormatException {
+        switch (exportFormat) {
+            case PREVIEW_PDF -> gephi.print(outputFolder.resolve(name + ".pdf"));
+            case PDF -> gephi.exportStreaming(outputFolder.resolve(name + ".pdf"));
+            case SVG -> gephi.exportStreaming(outputFolder.resolve(name + ".svg"));
+            case SVGZ -> gephi.exportStreaming(outputFolder.resolve(name + ".svgz"));
         }
-        gephi.print(outputFolder.resolve(part + "-" + algorithm + ".pdf"));
+    }
+
+    // Applies a change of topology to the graph already laid out, relaxes only the neighbourhood of the change and exports
+    public void updateDiagram(TopologyChange change, Path outputFolder, String name, Gephi.LayoutAlgorithm layoutAlgorithm) throws IOException, FontFormatException {
+        applyChange(change, layoutAlgorithm);
+        export(outputFolder, name + "-" + layoutAlgorithm);
+    }
+
+    public void applyChange(TopologyChange change, Gephi.LayoutAlgorithm layoutAlgorithm) {
+        Set<Node> changed = new LinkedHashSet<>();
+        // Edges by the id of each of their members, merged edges are found by any of them
+        Map<String, List<Edge>> edgesByElementId = new HashMap<>();
+        for (Edge e : gephi.graph.getEdges()) {
+            for (String id : memberIds(e)) {
+                edgesByElementId.computeIfAbsent(id, k -> new ArrayList<>()).add(e);
+            }
+        }
+
+        // A merged edge is removed as a whole, its other members are added again
+        Set<Edge> removed = new LinkedHashSet<>();
+        Set<String> added = new LinkedHashSet<>();
+        for (String id : change.removedElementIds) {
+            for (Edge e : edgesByElementId.getOrDefault(id, List.of())) {
+                if (removed.add(e)) {
+                    changed.add(e.getSource());
+                    changed.add(e.getTarget());
+                    for (String memberId : memberIds(e)) {
+                        edgesByElementId.remove(memberId);
+                        if (!change.removedElementIds.contains(memberId)) {
+                            added.add(memberId);
+                        }
+                    }
+                }
+            }
+        }
+        gephi.removeEdges(removed);
+        added.addAll(change.addedElementIds);
+
+        List<Line> lines = new ArrayList<>();
+        List<TieLine> tieLines = new ArrayList<>();
+        List<TwoWindingsTransformer> twoWindingsTransformers = new ArrayList<>();
+        List<ThreeWindingsTransformer> threeWindingsTransformers = new ArrayList<>();
+        List<HvdcLine> hvdcLines = new ArrayList<>();
+        for (String id : added) {
+            if (edgesByElementId.containsKey(id)) {
+                continue;
+            }
+            Identifiable<?> element = network.getIdentifiable(id);
+            if (element instanceof Line line) {
+                lines.add(line);
+            } else if (element instanceof TieLine tieLine) {
+                tieLines.add(tieLine);
+            } else if (element instanceof TwoWindingsTransformer t) {
+                twoWindingsTransformers.add(t);
+            } else if (element instanceof ThreeWindingsTransformer t) {
+                threeWindingsTransformers.add(t);
+            } else if (element instanceof HvdcLine hvdcLine) {
+                hvdcLines.add(hvdcLine);
+            } else {
+                throw new IllegalArgumentException("Not a line, tie line, transformer or HVDC line: " + id);
+            }
+        }
+        GraphData data = extractor.extract(lines, tieLines, twoWindingsTransformers, threeWindingsTransformers, hvdcLines);
+        load(data);
+        for (GraphData.EdgeData edgeData : data.edges) {
+            changed.add(nodesById.get(edgeData.node1));
+            changed.add(nodesById.get(edgeData.node2));
+        }
+
+        // New nodes and edges get their colors and sizes
+        if (!data.edges.isEmpty()) {
+            colorizeNodes();
+            sizeNodes();
+            colorizeEdges();
+        }
+        gephi.relaxNeighbourhood(changed, INCREMENTAL_HOPS, INCREMENTAL_MAX_NODES, layoutAlgorithm, INCREMENTAL_ITERATIONS);
+    }
+
+    // Nodes plus edges
+    public int getGraphSize() {
+        return gephi.graph.getNodeCount() + gephi.graph.getEdgeCount();
+    }
+
+    // Set before the graph is built
+    public void setGranularity(GraphExtractor.Granularity granularity) {
+        this.granularity = granularity;
+        extractor.setGranularity(granularity);
+    }
+
+    private String[] memberIds(Edge e) {
+        String[] memberIds = (String[]) e.getAttribute(memberIdsColumn);
+        return memberIds != null ? memberIds : new String[]{(String) e.getAttribute(elementIdColumn)};
+    }
+
+    // Set before the graph is built
+    public void setMergeParallelEdges(boolean mergeParallelEdges) {
+        this.mergeParallelEdges = mergeParallelEdges;
+        extractor.setMergeParallelEdges(mergeParallelEdges);
+    }
+
+    public void setExportFormat(ExportFormat exportFormat) {
+        this.exportFormat = exportFormat;
+    }
+
+    // Positions of the previous run are used as the starting point of the layout, and the new ones saved
+    public void setPositionStore(PositionStore positionStore) {
+        this.positionStore = positionStore;
     }
 
     public void colorizeNodes() {
@@ -105,7 +302,7 @@ public class Viz {
                 return;
         }
         if (colorTransformer != null) {
-            gephi.appearanceController.transform(colorTransformer);
+            gephi.transform(colorTransformer);
         }
     }
 
@@ -154,7 +351,7 @@ public class Viz {
         }
 
         assignVoltageLevelColors(function);
-        gephi.appearanceController.transform(function);
+        gephi.transform(function);
         Column isDcColumn = gephi.model.getEdgeTable().getColumn("isDC");
         for (Edge e : gephi.graph.getEdges()) {
             boolean isDc = (Boolean) e.getAttribute(isDcColumn);
@@ -205,97 +402,65 @@ public class Viz {
         RankingNodeSizeTransformer transformer = function.getTransformer();
         transformer.setMinSize(Gephi.MIN_NODE_SIZE);
         transformer.setMaxSize(Gephi.MAX_NODE_SIZE);
-        gephi.appearanceController.transform(function);
+        gephi.transform(function);
     }
 
     private void addNetworkColumns() {
         gephi.model.getNodeTable().addColumn("netActivePower", Double.class);
         gephi.model.getNodeTable().addColumn("absActivePower", Double.class);
         gephi.model.getNodeTable().addColumn("nominalVoltage", Double.class);
+        gephi.model.getNodeTable().addColumn("substation", String.class);
         gephi.model.getEdgeTable().addColumn("nominalVoltage", Double.class);
         gephi.model.getEdgeTable().addColumn("isDC", Boolean.class);
+        gephi.model.getEdgeTable().addColumn("elementId", String.class);
+        gephi.model.getEdgeTable().addColumn("multiplicity", Integer.class);
+        gephi.model.getEdgeTable().addColumn("memberIds", String[].class);
     }
 
     protected void addLines(List<Line> lines) {
-        Column isDcColumn = gephi.model.getEdgeTable().getColumn("isDC");
-        for (Line line : lines) {
-            Terminal t1 = line.getTerminal1();
-            Terminal t2 = line.getTerminal2();
-            if (accepted(t1, t2)) {
-                double weight = weight(line.getX());
-                String label = line.getNameOrId();
-                double nominalVoltage = t1.getVoltageLevel().getNominalV();
-                Edge e = addEdge(label, t1, t2, weight, nominalVoltage);
-                e.setAttribute(isDcColumn, false);
-            }
-        }
+        load(extractor.extract(lines, List.of(), List.of(), List.of(), List.of()));
     }
 
     protected void addTieLines(List<TieLine> tieLines) {
-        Column isDcColumn = gephi.model.getEdgeTable().getColumn("isDC");
-        for (TieLine line : tieLines) {
-            Terminal t1 = line.getTerminal1();
-            Terminal t2 = line.getTerminal2();
-            if (accepted(t1, t2)) {
-                double weight = weight(line.getX());
-                String label = line.getNameOrId();
-                double nominalVoltage = t1.getVoltageLevel().getNominalV();
-                Edge e = addEdge(label, t1, t2, weight, nominalVoltage);
-                e.setAttribute(isDcColumn, false);
-            }
-        }
+        load(extractor.extract(List.of(), tieLines, List.of(), List.of(), List.of()));
     }
 
-    private void add2wTransformers(List<TwoWindingsTransformer> transformers) {
-        Column isDcColumn = gephi.model.getEdgeTable().getColumn("isDC");
-        for (TwoWindingsTransformer transformer : transformers) {
-            Terminal t1 = transformer.getTerminal1();
-            Terminal t2 = transformer.getTerminal2();
-            if (accepted(t1, t2)) {
-                double weight = weight(transformer.getX());
-                String label = transformer.getNameOrId();
-                double nominalVoltage = t1.getVoltageLevel().getNominalV();
-                Edge e = addEdge(label, t1, t2, weight, nominalVoltage);
-                e.setAttribute(isDcColumn, false);
-            }
-        }
+    protected void addDcLines(List<HvdcLine> dcLines) {
+        load(extractor.extract(List.of(), List.of(), List.of(), List.of(), dcLines));
     }
 
-    private void add3wTransformers(List<ThreeWindingsTransformer> transformers) {
-        Column isDcColumn = gephi.model.getEdgeTable().getColumn("isDC");
-        for (ThreeWindingsTransformer transformer : transformers) {
-            Terminal t1 = transformer.getLeg1().getTerminal();
-            Terminal t2 = transformer.getLeg2().getTerminal();
-            Terminal t3 = transformer.getLeg3().getTerminal();
-            if (accepted(t1, t2, t3)) {
-                Node node0 = new NodeAdder3wInnerNode().addNode(transformer);
-                String label = transformer.getNameOrId();
-
-                double weight1 = weight(transformer.getLeg1().getX());
-                addEdge(label, t1, node0, weight1, t1.getVoltageLevel().getNominalV()).setAttribute(isDcColumn, false);
-
-                double weight2 = weight(transformer.getLeg2().getX());
-                addEdge(label, t2, node0, weight2, t2.getVoltageLevel().getNominalV()).setAttribute(isDcColumn, false);
-
-                double weight3 = weight(transformer.getLeg3().getX());
-                addEdge(label, t3, node0, weight3, t3.getVoltageLevel().getNominalV()).setAttribute(isDcColumn, false);
-            }
-        }
+    protected void addElements(List<Line> lines, List<TieLine> tieLines,
+                               List<TwoWindingsTransformer> twoWindingsTransformers,
+                               List<ThreeWindingsTransformer> threeWindingsTransformers,
+                               List<HvdcLine> hvdcLines) {
+        load(extractor.extract(lines, tieLines, twoWindingsTransformers, threeWindingsTransformers, hvdcLines));
     }
 
-    protected void addDcLines(List<HvdcLine> dcLines) {
-        Column isDcColumn = gephi.model.getEdgeTable().getColumn("isDC");
-        for (HvdcLine dcLine : dcLines) {
-            Terminal t1 = dcLine.getConverterStation1().getTerminal();
-            Terminal t2 = dcLine.getConverterStation2().getTerminal();
-            if (accepted(t1, t2)) {
-                double weight = weight(dcLine.getR());
-                String label = dcLine.getNameOrId();
-                double nominalVoltage = dcLine.getNominalV();
-                Edge e = addEdge(label, t1, t2, weight, nominalVoltage);
-                e.setAttribute(isDcColumn, true);
+    // Nodes already in the graph are reused, new nodes and all edges are added in a single batch
+    private void load(GraphData data) {
+        List<Node> nodes = new ArrayList<>();
+        for (GraphData.NodeData nodeData : data.nodes) {
+            if (!nodesById.containsKey(nodeData.id)) {
+                Node n = gephi.newNode(nodeData.id, nodeData.label);
+                n.setAttribute(netActivePowerColumn, nodeData.netActivePower);
+                n.setAttribute(absActivePowerColumn, Math.abs(nodeData.netActivePower));
+                n.setAttribute(nodeNominalVoltageColumn, nodeData.nominalVoltage);
+                n.setAttribute(substationColumn, nodeData.substation);
+                nodesById.put(nodeData.id, n);
+                nodes.add(n);
             }
         }
+        List<Edge> edges = new ArrayList<>(data.edges.size());
+        for (GraphData.EdgeData edgeData : data.edges) {
+            Edge e = gephi.newEdge(edgeData.label, nodesById.get(edgeData.node1), nodesById.get(edgeData.node2), edgeData.weight);
+            e.setAttribute(nominalVoltageColumn, edgeData.nominalVoltage);
+            e.setAttribute(isDcColumn, edgeData.dc);
+            e.setAttribute(elementIdColumn, edgeData.elementId);
+            e.setAttribute(multiplicityColumn, edgeData.multiplicity);
+            e.setAttribute(memberIdsColumn, edgeData.memberIds.toArray(new String[0]));
+            edges.add(e);
+        }
+        gephi.addAll(nodes, edges);
     }
 
     private double weight(double impedance) {
@@ -305,13 +470,9 @@ public class Viz {
         };
     }
 
-    private boolean accepted(Terminal... ts) {
-        for (Terminal t : ts) {
-            if (voltageLevelFilter.test(t.getVoltageLevel())) {
-                return true;
-            }
-        }
-        return false;
+    @Override
+    public void close() {
+        gephi.close();
     }
 
     public enum WeightInterpretation {
@@ -319,83 +480,8 @@ public class Viz {
 
     }
 
-    interface NodeAdder {
-        default Node addNode() {
-            throw new RuntimeException("not implemented");
-        }
-
-        default Node addNode(Terminal t) {
-            throw new RuntimeException("not implemented");
-        }
-    }
-
-    class NodeAdderSubstation implements NodeAdder {
-        public Node addNode(Terminal t) {
-            return calcAttributes(gephi.addNode(GridHierarchy.substationId(t), GridHierarchy.substationName(t)));
-        }
-
-        private Node calcAttributes(Node n) {
-            Substation substation = network.getSubstation((String) n.getId());
-            if (substation == null) {
-                throw new RuntimeException("Missing substation " + n.getId());
-            }
-            double loadsP = substation.getVoltageLevelStream().flatMap(VoltageLevel::getLoadStream).mapToDouble(Load::getP0).sum();
-            double gensP = substation.getVoltageLevelStream().flatMap(VoltageLevel::getGeneratorStream).mapToDouble(Generator::getTargetP).sum();
-            double maxNominalVoltage = substation.getVoltageLevelStream()
-                    .map(VoltageLevel::getNominalV)
-                    .max(Double::compare)
-                    .orElse(0.0);
-            n.setAttribute("netActivePower", loadsP - gensP);
-            n.setAttribute("absActivePower", Math.abs(loadsP - gensP));
-            n.setAttribute("nominalVoltage", maxNominalVoltage);
-            return n;
-        }
-    }
-
-    class NodeAdderVoltageLevel implements NodeAdder {
-        public Node addNode(Terminal t) {
-            String label = GridHierarchy.substationName(t) + " " + t.getVoltageLevel().getNameOrId();
-            return calcAttributes(gephi.addNode(t.getVoltageLevel().getId(), label));
-        }
-
-        private Node calcAttributes(Node n) {
-            VoltageLevel vl = network.getVoltageLevel((String) n.getId());
-            double loadsP = vl.getLoadStream().mapToDouble(Load::getP0).sum();
-            double gensP = vl.getGeneratorStream().mapToDouble(Generator::getTargetP).sum();
-            n.setAttribute("netActivePower", loadsP - gensP);
-            n.setAttribute("absActivePower", Math.abs(loadsP - gensP));
-            n.setAttribute("nominalVoltage", vl.getNominalV());
-            return n;
-        }
-    }
-
-    class NodeAdder3wInnerNode implements NodeAdder {
-        public Node addNode(ThreeWindingsTransformer t) {
-            String label = "";
-            Node n = gephi.addNode(t.getId(), label);
-            n.setAttribute("netActivePower", 0.0);
-            n.setAttribute("absActivePower", 0.0);
-            n.setAttribute("nominalVoltage", 0.0);
-            return n;
-        }
-    }
-
-    private Edge addEdge(String label, Terminal t1, Terminal t2, double weight, double nominalVoltage) {
-        // NodeAdder nodeAdder = new NodeAdderSubstation();
-        NodeAdder nodeAdder = new NodeAdderVoltageLevel();
-        Node node1 = nodeAdder.addNode(t1);
-        Node node2 = nodeAdder.addNode(t2);
-        Edge edge = gephi.addEdge(label, node1, node2, weight);
-        edge.setAttribute(nominalVoltageColumn, nominalVoltage);
-        return edge;
-    }
-
-    private Edge addEdge(String label, Terminal t1, Node node0, double weight, double nominalVoltage) {
-        // NodeAdder nodeAdder = new NodeAdderSubstation();
-        NodeAdder nodeAdder = new NodeAdderVoltageLevel();
-        Node node1 = nodeAdder.addNode(t1);
-        Edge edge = gephi.addEdge(label, node1, node0, weight);
-        edge.setAttribute(nominalVoltageColumn, nominalVoltage);
-        return edge;
+    // PREVIEW_PDF goes through the Gephi preview model, the others are written by the streaming exporter
+    public enum ExportFormat {
+        PREVIEW_PDF, PDF, SVG, SVGZ
     }
 }
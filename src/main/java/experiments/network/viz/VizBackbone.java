@@ -48,7 +48,7 @@ public class VizBackbone extends Viz {
         if (EXPORT_GEXF) {
             gephi.export(outputFolder.resolve("all-closer-to-backbone-refs.gexf"));
         }
-        gephi.print(outputFolder.resolve("all-closer-to-backbone-refs.pdf"));
+        export(outputFolder, "all-closer-to-backbone-refs");
 
         layoutAndExport(Gephi.LayoutAlgorithm.EXPANSION, outputFolder, "all", false);
         layoutAndExport(Gephi.LayoutAlgorithm.ATLAS2, outputFolder, "all", false);
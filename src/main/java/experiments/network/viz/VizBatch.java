@@ -0,0 +1,290 @@
+package experiments.network.viz;
+
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.VoltageLevel;
+import com.powsybl.nad.build.iidm.VoltageLevelFilter;
+import experiments.network.viz.gephi.Gephi;
+import experiments.network.viz.gephi.LayoutScheduler;
+import experiments.network.viz.gephi.PositionStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Runs independent diagram jobs (network, layout, weight mode) concurrently on a bounded pool
+// Each job has its own Viz, so its own Gephi workspace with its own graph, appearance and preview models.
+// Jobs on the same network share it, it is loaded once by the first job that needs it,
+// and jobs on the same network and voltage levels share the graph, it is built once and copied for each layout.
+//
+// Jobs can be read from a manifest, one job per line, '#' starts a comment:
+//   name, network, layout, useWeights[, voltageLevelId, depth]
+// network is a file path, relative to the manifest folder, or synthetic:substations[:seed]
+// A field with a comma is written between double quotes, a double quote inside it is doubled
+//
+// Jobs run in two stages: the layout on the batch threads, with the layout steps on the shared LayoutScheduler threads,
+// and the export on the scheduler export executor, so a batch thread starts the next layout while the last one is written.
+// Exports use the streaming exporter by default, the Gephi preview export runs one workspace at a time
+
+public final class VizBatch {
+
+    // Layouts running at the same time, by default a quarter of the cores, -Dviz.batch.threads=...
+    // They share the LayoutScheduler threads, more jobs do not add threads
+    public static final int DEFAULT_THREADS = Integer.getInteger("viz.batch.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+
+    // Folder to keep the positions of each job between runs, -Dviz.positions=..., not kept by default
+    private static final String POSITIONS_FOLDER = System.getProperty("viz.positions");
+    // Nodes of the graph, -Dviz.granularity=SUBSTATION for an overview with a much smaller graph
+    private static final GraphExtractor.Granularity GRANULARITY = GraphExtractor.Granularity.valueOf(
+            System.getProperty("viz.granularity", GraphExtractor.Granularity.VOLTAGE_LEVEL.name()));
+    // Format of the diagrams, -Dviz.export.format=SVG, SVGZ or PREVIEW_PDF
+    private static final Viz.ExportFormat EXPORT_FORMAT = Viz.ExportFormat.valueOf(
+            System.getProperty("viz.export.format", Viz.ExportFormat.PDF.name()));
+
+    private VizBatch() {
+    }
+
+    public static final class Job {
+        final String name;
+        final SharedGraph graph;
+        final boolean useWeights;
+        final Gephi.LayoutAlgorithm layoutAlgorithm;
+        final Path outputFolder;
+
+        public Job(String name, SharedGraph graph, boolean useWeights, Gephi.LayoutAlgorithm layoutAlgorithm, Path outputFolder) {
+            this.name = name;
+            this.graph = graph;
+            this.useWeights = useWeights;
+            this.layoutAlgorithm = layoutAlgorithm;
+            this.outputFolder = outputFolder;
+        }
+
+        // Layout stage, the Viz returned is closed by the export stage
+        Viz layout() {
+            Viz viz = new Viz(graph.get(), useWeights);
+            viz.setExportFormat(EXPORT_FORMAT);
+            try {
+                if (POSITIONS_FOLDER != null) {
+                    viz.setPositionStore(new PositionStore(Paths.get(POSITIONS_FOLDER).resolve(this + ".positions")));
+                }
+                viz.layoutDiagram(layoutAlgorithm);
+                return viz;
+            } catch (RuntimeException e) {
+                viz.close();
+                throw e;
+            }
+        }
+
+        void export(Viz viz) throws Exception {
+            try (viz) {
+                viz.exportDiagram(outputFolder, name + "-use-weights-" + useWeights, layoutAlgorithm);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + "-use-weights-" + useWeights + "-" + layoutAlgorithm;
+        }
+    }
+
+    // Graph of a network, extracted and styled once by the first job that needs it,
+    // every job lays out its own copy
+    public static final class SharedGraph implements Supplier<Viz>, AutoCloseable {
+        private final Supplier<Network> networkSupplier;
+        private final Function<Network, Predicate<VoltageLevel>> voltageLevelFilterFactory;
+        private Viz viz;
+
+        public SharedGraph(Supplier<Network> networkSupplier, Function<Network, Predicate<VoltageLevel>> voltageLevelFilterFactory) {
+            this.networkSupplier = networkSupplier;
+            this.voltageLevelFilterFactory = voltageLevelFilterFactory;
+        }
+
+        @Override
+        public synchronized Viz get() {
+            if (viz == null) {
+                Network network = networkSupplier.get();
+                // Built with weights, so copies can use them or not
+                // ATLAS2 and YIFANHU seem to consider weight as edge strength (admittance) instead of costs (impedances)
+                viz = new Viz(network, voltageLevelFilterFactory.apply(network), true, Viz.WeightInterpretation.WEIGHT_IS_ADMITTANCE);
+                viz.setGranularity(GRANULARITY);
+                viz.prepareGraph();
+            }
+            return viz;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (viz != null) {
+                viz.close();
+                viz = null;
+            }
+        }
+    }
+
+    // The network is created only once, whatever the number of jobs using it
+    public static Supplier<Network> memoize(Supplier<Network> supplier) {
+        return new Supplier<>() {
+            private Network network;
+
+            @Override
+            public synchronized Network get() {
+                if (network == null) {
+                    network = supplier.get();
+                }
+                return network;
+            }
+        };
+    }
+
+    public static List<Job> readManifest(Path manifest, Path outputFolder) throws IOException {
+        Path baseFolder = manifest.toAbsolutePath().getParent();
+        Map<String, Supplier<Network>> networks = new HashMap<>();
+        Map<List<String>, SharedGraph> graphs = new HashMap<>();
+        List<Job> jobs = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest)) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = splitFields(line);
+            if (fields == null || fields.size() != 4 && fields.size() != 6) {
+                throw new IllegalArgumentException(manifest + ":" + lineNumber + ": expected name, network, layout, useWeights[, voltageLevelId, depth]");
+            }
+            Supplier<Network> networkSupplier = networks.computeIfAbsent(fields.get(1), spec -> memoize(networkSupplier(spec, baseFolder)));
+            Gephi.LayoutAlgorithm layoutAlgorithm = Gephi.LayoutAlgorithm.valueOf(fields.get(2));
+            boolean useWeights = Boolean.parseBoolean(fields.get(3));
+            Function<Network, Predicate<VoltageLevel>> voltageLevelFilterFactory = network -> vl -> true;
+            // Network, voltage level and depth, the fields themselves so ids with commas do not collide
+            List<String> graphKey = fields.subList(1, 2);
+            if (fields.size() == 6) {
+                String voltageLevelId = fields.get(4);
+                int depth = Integer.parseInt(fields.get(5));
+                voltageLevelFilterFactory = network -> VoltageLevelFilter.createVoltageLevelDepthFilter(network, voltageLevelId, depth);
+                graphKey = List.of(fields.get(1), voltageLevelId, fields.get(5));
+            }
+            Function<Network, Predicate<VoltageLevel>> filterFactory = voltageLevelFilterFactory;
+            SharedGraph graph = graphs.computeIfAbsent(graphKey, k -> new SharedGraph(networkSupplier, filterFactory));
+            jobs.add(new Job(fields.get(0), graph, useWeights, layoutAlgorithm, outputFolder));
+        }
+        return jobs;
+    }
+
+    // Trimmed fields of a manifest line, or null if a quoted field is not closed or is followed by other characters
+    static List<String> splitFields(String line) {
+        List<String> fields = new ArrayList<>();
+        int i = 0;
+        while (true) {
+            while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            String field;
+            if (i < line.length() && line.charAt(i) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        return null;
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        quoted.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        quoted.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    return null;
+                }
+                field = quoted.toString();
+            } else {
+                int comma = line.indexOf(',', i);
+                int end = comma >= 0 ? comma : line.length();
+                field = line.substring(i, end).trim();
+                i = end;
+            }
+            fields.add(field);
+            if (i >= line.length()) {
+                return fields;
+            }
+            i++;
+        }
+    }
+
+    private static Supplier<Network> networkSupplier(String spec, Path baseFolder) {
+        if (spec.startsWith("synthetic:")) {
+            String[] parts = spec.split(":");
+            SyntheticNetworkGenerator generator = new SyntheticNetworkGenerator();
+            generator.setSubstationCount(Integer.parseInt(parts[1]));
+            if (parts.length > 2) {
+                generator.setSeed(Long.parseLong(parts[2]));
+            }
+            return generator::generate;
+        }
+        Path networkFile = baseFolder.resolve(spec);
+        return () -> NetworkCache.read(networkFile);
+    }
+
+    public static void run(List<Job> jobs, int threads) throws IOException {
+        for (Path outputFolder : jobs.stream().map(j -> j.outputFolder).distinct().toList()) {
+            Files.createDirectories(outputFolder);
+        }
+        System.out.println("Batch of " + jobs.size() + " jobs on " + threads + " threads, exported as " + EXPORT_FORMAT
+                + (LayoutScheduler.hasVirtualExportThreads() ? " on virtual threads" : ""));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ExecutorService exportExecutor = LayoutScheduler.exportExecutor();
+        Map<Job, Future<Future<?>>> futures = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            futures.put(job, executor.submit(() -> {
+                long t0 = System.currentTimeMillis();
+                Viz viz = job.layout();
+                System.out.println("Job " + job + " laid out in " + (System.currentTimeMillis() - t0) + " ms");
+                return exportExecutor.submit(() -> {
+                    job.export(viz);
+                    System.out.println("Job " + job + " done in " + (System.currentTimeMillis() - t0) + " ms");
+                    return null;
+                });
+            }));
+        }
+        executor.shutdown();
+
+        // A failed job does not stop the others, all failures are reported at the end
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<Job, Future<Future<?>>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                throw new RuntimeException("Batch interrupted", e);
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.out.println("Job " + entry.getKey() + " failed: " + cause);
+                cause.printStackTrace();
+                failures.add(entry.getKey().toString());
+            }
+        }
+        jobs.stream().map(j -> j.graph).distinct().forEach(SharedGraph::close);
+        if (!failures.isEmpty()) {
+            throw new RuntimeException(failures.size() + " of " + jobs.size() + " jobs failed: " + failures);
+        }
+    }
+}
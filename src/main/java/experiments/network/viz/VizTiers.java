@@ -0,0 +1,79 @@
+package experiments.network.viz;
+
+import com.powsybl.iidm.network.Network;
+import com.powsybl.iidm.network.VoltageLevel;
+import experiments.network.viz.GridHierarchy.Tier;
+import experiments.network.viz.gephi.Gephi;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Progressive layout by voltage tiers: the highest tier is laid out first,
+// then each lower tier is added only when requested, with the nodes already laid out fixed,
+// so every step only moves the nodes of the new tier
+
+public class VizTiers extends Viz {
+
+    private final GridHierarchy gridHierarchy;
+    private int tierCount = 0;
+
+    public VizTiers(Network network, Predicate<VoltageLevel> voltageLevelFilter, boolean useWeights, WeightInterpretation weightInterpretation) {
+        super(network, voltageLevelFilter, useWeights, weightInterpretation);
+        gridHierarchy = new GridHierarchy(network);
+    }
+
+    public GridHierarchy getGridHierarchy() {
+        return gridHierarchy;
+    }
+
+    public boolean hasNextTier() {
+        return tierCount < gridHierarchy.tiers().size();
+    }
+
+    // Number of tiers already in the graph
+    public int getTierCount() {
+        return tierCount;
+    }
+
+    public void addNextTier(Gephi.LayoutAlgorithm algorithm) {
+        List<Tier> tiers = gridHierarchy.tiers();
+        if (tierCount >= tiers.size()) {
+            throw new IllegalStateException("All " + tiers.size() + " tiers already added");
+        }
+        Tier tier = tiers.get(tierCount);
+        int nodeCount = gephi.graph.getNodeCount();
+        int edgeCount = gephi.graph.getEdgeCount();
+        boolean first = nodeCount == 0;
+        if (!first) {
+            gephi.keepPositions();
+        }
+        addElements(tier.lines, tier.tieLines, tier.twoWindingsTransformers, tier.threeWindingsTransformers, tier.hvdcLines);
+        tierCount++;
+        if (gephi.graph.getNodeCount() == nodeCount && gephi.graph.getEdgeCount() == edgeCount) {
+            // Nothing new to lay out, as a tier without elements of its voltages
+            return;
+        }
+        colorizeNodes();
+        sizeNodes();
+        colorizeEdges();
+        if (first) {
+            gephi.layout(algorithm, true);
+        } else {
+            gephi.moveNewNodesCloseToLaidOutNeighbor();
+            gephi.scatterNodesWithoutPosition();
+            gephi.layout(algorithm, false);
+        }
+    }
+
+    // One diagram after each tier, down to the given number of tiers
+    public void createTierDiagrams(Path outputFolder, int maxTierCount, Gephi.LayoutAlgorithm algorithm) throws IOException, FontFormatException {
+        prepareOutputFolder(outputFolder);
+        while (tierCount < maxTierCount && hasNextTier()) {
+            addNextTier(algorithm);
+            export(outputFolder, "tiers-" + tierCount + "-" + algorithm);
+        }
+    }
+}
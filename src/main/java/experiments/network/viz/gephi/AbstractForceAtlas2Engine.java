@@ -0,0 +1,175 @@
+package experiments.network.viz.gephi;
+
+import java.util.concurrent.ExecutorService;
+
+// Settings and iteration of the ForceAtlas2 engines on primitive buffers, whatever the precision of their buffers
+// A step resets the forces, applies repulsion, gravity and attraction, adapts the global speed
+// from the swinging and traction of the nodes and moves them, each part timed as a phase of the metrics.
+// Subclasses keep positions, forces, masses and sizes in their own arrays and implement the parts that read them
+
+public abstract class AbstractForceAtlas2Engine implements ConvergentLayout {
+
+    protected final int nodeCount;
+    protected final boolean[] fixed;
+    protected final ParallelAttraction attraction;
+    protected final ParallelRepulsion repulsion = new ParallelRepulsion();
+    protected final double outboundAttCompensation;
+    private final int edgeCount;
+
+    protected double scalingRatio = 2.0;
+    protected boolean strongGravityMode = false;
+    protected double gravity = 1.0;
+    protected boolean outboundAttractionDistribution = false;
+    protected boolean linLogMode = false;
+    protected boolean adjustSizes = false;
+    protected boolean barnesHutOptimize = false;
+    protected double barnesHutTheta = 1.2;
+
+    private final AdaptiveSpeed adaptiveSpeed = new AdaptiveSpeed();
+    protected double totalSwinging;
+    protected double totalEffectiveTraction;
+    protected double relativeDisplacement;
+    protected LayoutMetrics metrics = LayoutMetrics.disabled();
+
+    // Masses of the nodes, or null for the Gephi mass
+    AbstractForceAtlas2Engine(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeWeights, double[] masses) {
+        if (edgeSources.length != edgeTargets.length || edgeSources.length != edgeWeights.length) {
+            throw new IllegalArgumentException("Edge arrays with different lengths");
+        }
+        if (masses != null && masses.length != nodeCount) {
+            throw new IllegalArgumentException("Masses for " + masses.length + " nodes, expected " + nodeCount);
+        }
+        this.nodeCount = nodeCount;
+        this.fixed = new boolean[nodeCount];
+        this.edgeCount = edgeWeights.length;
+        this.attraction = new ParallelAttraction(nodeCount, edgeSources, edgeTargets);
+
+        double totalMass = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            totalMass += initialMass(masses, i);
+        }
+        outboundAttCompensation = nodeCount > 0 ? totalMass / nodeCount : 1;
+    }
+
+    // Same mass as Gephi: 1 + degree, self loops counted twice, unless given
+    protected final double initialMass(double[] masses, int i) {
+        return masses != null ? masses[i] : 1 + attraction.degree(i);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public boolean[] fixed() {
+        return fixed;
+    }
+
+    public void setMetrics(LayoutMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void step(ExecutorService pool, int taskCount) {
+        metrics.phase(LayoutMetrics.Phase.RESET);
+        resetForces();
+        if (barnesHutOptimize) {
+            metrics.phase(LayoutMetrics.Phase.TREE_BUILD);
+            buildTree(pool, taskCount);
+        }
+        metrics.phase(LayoutMetrics.Phase.REPULSION);
+        applyRepulsion(pool, taskCount);
+        metrics.phase(LayoutMetrics.Phase.ATTRACTION);
+        applyAttraction(pool, taskCount, outboundAttractionDistribution ? outboundAttCompensation : 1);
+        metrics.phase(LayoutMetrics.Phase.SPEED);
+        // Sets totalSwinging and totalEffectiveTraction
+        sumSwingingAndTraction();
+        adaptiveSpeed.update(totalSwinging, totalEffectiveTraction, nodeCount);
+        metrics.phase(LayoutMetrics.Phase.POSITIONS);
+        applyForces(adaptiveSpeed.getSpeed());
+    }
+
+    // Forces of the last step become the old ones, the new ones start at zero
+    protected abstract void resetForces();
+
+    protected abstract void buildTree(ExecutorService pool, int taskCount);
+
+    // Repulsion and gravity
+    protected abstract void applyRepulsion(ExecutorService pool, int taskCount);
+
+    protected abstract void applyAttraction(ExecutorService pool, int taskCount, double coefficient);
+
+    protected abstract void sumSwingingAndTraction();
+
+    // Moves the nodes that are not fixed and sets relativeDisplacement
+    protected abstract void applyForces(double speed);
+
+    // Adaptive auto-speed: the speed of each node is lowered when the node swings
+    // df is the norm of the force on the node, its displacement is the force times the factor
+    protected final double speedFactor(double speed, double swinging, double df) {
+        if (adjustSizes) {
+            // If nodes overlap prevention is active, it's not possible to trust the swinging mesure
+            double factor = 0.1 * speed / (1f + Math.sqrt(speed * swinging));
+            return Math.min(factor * df, 10.) / df;
+        }
+        return speed / (1f + Math.sqrt(speed * swinging));
+    }
+
+    @Override
+    public double getTotalSwinging() {
+        return totalSwinging;
+    }
+
+    @Override
+    public double getTotalEffectiveTraction() {
+        return totalEffectiveTraction;
+    }
+
+    @Override
+    public double getSpeed() {
+        return adaptiveSpeed.getSpeed();
+    }
+
+    @Override
+    public double getRelativeDisplacement() {
+        return relativeDisplacement;
+    }
+
+    public void setScalingRatio(double scalingRatio) {
+        this.scalingRatio = scalingRatio;
+    }
+
+    public void setStrongGravityMode(boolean strongGravityMode) {
+        this.strongGravityMode = strongGravityMode;
+    }
+
+    public void setGravity(double gravity) {
+        this.gravity = gravity;
+    }
+
+    public void setOutboundAttractionDistribution(boolean outboundAttractionDistribution) {
+        this.outboundAttractionDistribution = outboundAttractionDistribution;
+    }
+
+    public void setLinLogMode(boolean linLogMode) {
+        this.linLogMode = linLogMode;
+    }
+
+    public void setAdjustSizes(boolean adjustSizes) {
+        this.adjustSizes = adjustSizes;
+    }
+
+    public void setJitterTolerance(double jitterTolerance) {
+        adaptiveSpeed.setJitterTolerance(jitterTolerance);
+    }
+
+    public void setBarnesHutOptimize(boolean barnesHutOptimize) {
+        this.barnesHutOptimize = barnesHutOptimize;
+    }
+
+    public void setBarnesHutTheta(double barnesHutTheta) {
+        this.barnesHutTheta = barnesHutTheta;
+    }
+}
@@ -0,0 +1,295 @@
+package experiments.network.viz.gephi;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+// Barnes-Hut quadtree stored in flat arrays and rebuilt in place every iteration
+// Points are sorted by Morton code (z-order), so every cell covers a contiguous range of the sorted points,
+// cells are created breadth first and the children of a cell are consecutive.
+// Morton codes, the sort, the sorted copies and the leaves are computed in parallel, only the cells are split on one thread.
+// Buffers only grow, after the first iterations a rebuild does not allocate.
+// Subclasses keep the sorted points and the cell summaries in arrays of their own precision and walk the tree on them
+
+public abstract class AbstractQuadTree {
+
+    static final int MORTON_BITS = 16; // Per axis, also the maximum depth of the tree
+    static final int LEAF_CAPACITY = 8;
+    static final int RADIX_BUCKETS = 1 << 8;
+    private static final int MIN_SORT_PART = 1 << 14;
+
+    protected final RepulsionKernel kernel;
+    // Cells with more points are split, unless at the maximum depth
+    private final int leafCapacity;
+
+    protected int pointCount;
+    private long[] keys = new long[0]; // Morton code << 32 | point index
+    private long[] sortBuffer = new long[0];
+    private int[] radixCounts = new int[RADIX_BUCKETS];
+    // Points in Morton order
+    protected int[] order = new int[0];
+
+    protected int cellCount;
+    protected int[] cellStart = new int[0];
+    protected int[] cellEnd = new int[0];
+    private int[] cellLevel = new int[0];
+    protected int[] cellFirstChild = new int[0];
+    protected int[] cellChildCount = new int[0];
+
+    // Larger leaves give the SIMD kernel longer batches, at the cost of more pairs computed exactly
+    AbstractQuadTree(RepulsionKernel kernel, int leafCapacity) {
+        if (leafCapacity < 1) {
+            throw new IllegalArgumentException("Leaf capacity must be at least 1: " + leafCapacity);
+        }
+        this.kernel = kernel;
+        this.leafCapacity = leafCapacity;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    // Point indices sorted along the z-order curve
+    public int[] order() {
+        return order;
+    }
+
+    // Coordinate of a point given to a build, read from an array of either precision
+    protected interface Coordinate {
+        double get(int i);
+    }
+
+    // Sorts the points by Morton code, copySorted copies the points of a range of order to the sorted arrays of the subclass,
+    // then the cells are split and summarized
+    protected final void build(ExecutorService pool, int taskCount, int n, Coordinate x, Coordinate y, ParallelAttraction.RangeTask copySorted) {
+        pointCount = n;
+        if (keys.length < n) {
+            keys = new long[n];
+            sortBuffer = new long[n];
+            order = new int[n];
+            growPoints(n);
+        }
+        cellCount = 0;
+        if (n == 0) {
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x.get(i));
+            minY = Math.min(minY, y.get(i));
+            maxX = Math.max(maxX, x.get(i));
+            maxY = Math.max(maxY, y.get(i));
+        }
+        // Square domain, so quadrants are squares at every level
+        double extent = Math.max(maxX - minX, maxY - minY);
+        double scale = extent > 0 ? ((1 << MORTON_BITS) - 1) / extent : 0;
+        double x0 = minX;
+        double y0 = minY;
+        ParallelAttraction.runRanges(pool, taskCount, n, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                long code = morton((int) ((x.get(i) - x0) * scale), (int) ((y.get(i) - y0) * scale));
+                keys[i] = code << 32 | i;
+            }
+        });
+        int parts = sortParts(taskCount, n);
+        if (radixCounts.length < parts * RADIX_BUCKETS) {
+            radixCounts = new int[parts * RADIX_BUCKETS];
+        }
+        radixSort(pool, parts, keys, sortBuffer, radixCounts, n);
+        ParallelAttraction.runRanges(pool, taskCount, n, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                order[k] = (int) keys[k];
+            }
+            copySorted.run(from, to);
+        });
+
+        buildCells();
+
+        // Leaves can be summarized in parallel, then inner cells from the bottom,
+        // children always have a greater index than their parent
+        ParallelAttraction.runRanges(pool, taskCount, cellCount, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                if (cellChildCount[c] == 0) {
+                    summarizeLeaf(c);
+                }
+            }
+        });
+        for (int c = cellCount - 1; c >= 0; c--) {
+            if (cellChildCount[c] > 0) {
+                summarizeInnerCell(c);
+            }
+        }
+    }
+
+    // Sorted arrays of the subclass for at least capacity points
+    protected abstract void growPoints(int capacity);
+
+    // Summary arrays of the subclass, the old summaries are kept
+    protected abstract void growCellSummaries(int capacity);
+
+    // Mass, mass center and size of the cell from its points
+    protected abstract void summarizeLeaf(int c);
+
+    // Same from the summaries of its children
+    protected abstract void summarizeInnerCell(int c);
+
+    // Leaves with a single point, and all the leaves when adjusting sizes, get the exact force,
+    // the far field approximation has no anti-collision term. As in Gephi regions with less than 2 nodes
+    protected final boolean isExactLeaf(int c, boolean adjustSizes) {
+        return cellChildCount[c] == 0 && (adjustSizes || cellEnd[c] - cellStart[c] < 2);
+    }
+
+    // As in Gephi regions, size is twice the distance from the mass center to the farthest point,
+    // here bounded by the farthest corner of the bounding box
+    protected static double cellSize(double cx, double cy, double minX, double minY, double maxX, double maxY) {
+        double fx = Math.max(cx - minX, maxX - cx);
+        double fy = Math.max(cy - minY, maxY - cy);
+        return 2 * Math.sqrt(fx * fx + fy * fy);
+    }
+
+    // Same node to node repulsion as the ForceAtlas2 linRepulsion and linRepulsion_antiCollision forces,
+    // factor of the vector (xDist, yDist) from node j to node i
+    static double repulsionFactor(double xDist, double yDist, double massi, double sizei, double massj, double sizej,
+                                  double coefficient, boolean adjustSizes) {
+        double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+        if (adjustSizes) {
+            distance = distance - sizei - sizej;
+            if (distance > 0) {
+                return coefficient * massi * massj / distance / distance;
+            } else if (distance < 0) {
+                return 100 * coefficient * massi * massj;
+            }
+            return 0;
+        }
+        return distance > 0 ? coefficient * massi * massj / distance / distance : 0;
+    }
+
+    private void buildCells() {
+        addCell(0, pointCount, 0);
+        for (int c = 0; c < cellCount; c++) {
+            int start = cellStart[c];
+            int end = cellEnd[c];
+            int level = cellLevel[c];
+            if (end - start <= leafCapacity || level == MORTON_BITS) {
+                continue;
+            }
+            // Points of the cell share the Morton prefix, the quadrant is given by the next two bits
+            int shift = 32 + 2 * (MORTON_BITS - 1 - level);
+            int firstChild = cellCount;
+            int childStart = start;
+            for (int quadrant = 0; quadrant < 4 && childStart < end; quadrant++) {
+                int childEnd = firstKeyAbove(childStart, end, shift, quadrant);
+                if (childEnd > childStart) {
+                    addCell(childStart, childEnd, level + 1);
+                    childStart = childEnd;
+                }
+            }
+            cellFirstChild[c] = firstChild;
+            cellChildCount[c] = cellCount - firstChild;
+        }
+    }
+
+    private int firstKeyAbove(int from, int to, int shift, int quadrant) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (((keys[mid] >>> shift) & 3) <= quadrant) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void addCell(int start, int end, int level) {
+        if (cellCount == cellStart.length) {
+            int capacity = Math.max(64, 2 * cellStart.length);
+            cellStart = Arrays.copyOf(cellStart, capacity);
+            cellEnd = Arrays.copyOf(cellEnd, capacity);
+            cellLevel = Arrays.copyOf(cellLevel, capacity);
+            cellFirstChild = Arrays.copyOf(cellFirstChild, capacity);
+            cellChildCount = Arrays.copyOf(cellChildCount, capacity);
+            growCellSummaries(capacity);
+        }
+        cellStart[cellCount] = start;
+        cellEnd[cellCount] = end;
+        cellLevel[cellCount] = level;
+        cellFirstChild[cellCount] = -1;
+        cellChildCount[cellCount] = 0;
+        cellCount++;
+    }
+
+    // Parts the sort splits the keys in, none below MIN_SORT_PART keys
+    static int sortParts(int taskCount, int n) {
+        return Math.max(1, Math.min(taskCount, n / MIN_SORT_PART));
+    }
+
+    // LSD radix sort of the keys on the 32 bits of the Morton code
+    // Keys are split in parts, each one counts the digits of its keys, and then moves them to its own offsets in every bucket,
+    // after the keys of the parts before it. Parts run in parallel and the sort is stable, the result does not depend on them.
+    // radixCounts holds RADIX_BUCKETS counts per part
+    static void radixSort(ExecutorService pool, int parts, long[] keys, long[] sortBuffer, int[] radixCounts, int n) {
+        long[] from = keys;
+        long[] to = sortBuffer;
+        for (int shift = 32; shift < 64; shift += 8) {
+            long[] source = from;
+            long[] target = to;
+            int digitShift = shift;
+            ParallelAttraction.runTasks(pool, parts, (firstPart, lastPart) -> {
+                for (int part = firstPart; part < lastPart; part++) {
+                    int offset = part * RADIX_BUCKETS;
+                    Arrays.fill(radixCounts, offset, offset + RADIX_BUCKETS, 0);
+                    for (int k = partStart(part, parts, n); k < partStart(part + 1, parts, n); k++) {
+                        radixCounts[offset + ((int) (source[k] >>> digitShift) & 0xFF)]++;
+                    }
+                }
+            });
+            // Bucket by bucket, part by part
+            int sum = 0;
+            for (int b = 0; b < RADIX_BUCKETS; b++) {
+                for (int part = 0; part < parts; part++) {
+                    int count = radixCounts[part * RADIX_BUCKETS + b];
+                    radixCounts[part * RADIX_BUCKETS + b] = sum;
+                    sum += count;
+                }
+            }
+            ParallelAttraction.runTasks(pool, parts, (firstPart, lastPart) -> {
+                for (int part = firstPart; part < lastPart; part++) {
+                    int offset = part * RADIX_BUCKETS;
+                    for (int k = partStart(part, parts, n); k < partStart(part + 1, parts, n); k++) {
+                        target[radixCounts[offset + ((int) (source[k] >>> digitShift) & 0xFF)]++] = source[k];
+                    }
+                }
+            });
+            from = target;
+            to = source;
+        }
+        // An even number of passes leaves the result in keys
+    }
+
+    private static int partStart(int part, int parts, int n) {
+        return (int) ((long) n * part / parts);
+    }
+
+    static long morton(int ix, int iy) {
+        return spread(ix) | spread(iy) << 1;
+    }
+
+    private static long spread(int v) {
+        long x = v & 0xFFFFL;
+        x = (x | (x << 8)) & 0x00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0FL;
+        x = (x | (x << 2)) & 0x33333333L;
+        x = (x | (x << 1)) & 0x55555555L;
+        return x;
+    }
+}
@@ -0,0 +1,51 @@
+package experiments.network.viz.gephi;
+
+// ForceAtlas2 global speed, adapted every iteration from the swinging and the traction of the nodes
+// Same empiric values as ForceAtlas2, shared by the double and the float engines
+
+final class AdaptiveSpeed {
+
+    private double speed = 1.;
+    private double speedEfficiency = 1.;
+    private double jitterTolerance = 1.0;
+
+    double getSpeed() {
+        return speed;
+    }
+
+    void setJitterTolerance(double jitterTolerance) {
+        this.jitterTolerance = jitterTolerance;
+    }
+
+    void update(double totalSwinging, double totalEffectiveTraction, int nodeCount) {
+        // Optimize jitter tolerance
+        double estimatedOptimalJitterTolerance = 0.05 * Math.sqrt(nodeCount);
+        double minJT = Math.sqrt(estimatedOptimalJitterTolerance);
+        double maxJT = 10;
+        double jt = jitterTolerance * Math.max(minJT,
+                Math.min(maxJT, estimatedOptimalJitterTolerance * totalEffectiveTraction / Math.pow(nodeCount, 2)));
+
+        double minSpeedEfficiency = 0.05;
+
+        // Protection against erratic behavior
+        if (totalSwinging / totalEffectiveTraction > 2.0) {
+            if (speedEfficiency > minSpeedEfficiency) {
+                speedEfficiency *= 0.5;
+            }
+            jt = Math.max(jt, jitterTolerance);
+        }
+
+        double targetSpeed = jt * speedEfficiency * totalEffectiveTraction / totalSwinging;
+
+        if (totalSwinging > jt * totalEffectiveTraction) {
+            if (speedEfficiency > minSpeedEfficiency) {
+                speedEfficiency *= 0.7;
+            }
+        } else if (speed < 1000) {
+            speedEfficiency *= 1.3;
+        }
+
+        double maxRise = 0.5;   // Max rise: 50%
+        speed = speed + Math.min(targetSpeed - speed, maxRise * speed);
+    }
+}
@@ -0,0 +1,20 @@
+package experiments.network.viz.gephi;
+
+import java.awt.*;
+import java.io.IOException;
+
+// Drawing primitives written by StreamingExporter, coordinates in page units with y pointing down
+
+interface Canvas extends AutoCloseable {
+
+    void begin(double width, double height) throws IOException;
+
+    void edge(double x1, double y1, double x2, double y2, Color color, double width) throws IOException;
+
+    void node(double x, double y, double radius, Color fill, Color border, double borderWidth) throws IOException;
+
+    void label(double x, double y, String text, double fontSize, Color color) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
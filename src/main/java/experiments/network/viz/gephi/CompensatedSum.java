@@ -0,0 +1,24 @@
+package experiments.network.viz.gephi;
+
+// Neumaier compensated sum, the rounding error of every addition is kept apart and added back at the end,
+// so sums over many nodes do not depend on their count or order for the digits that matter
+
+final class CompensatedSum {
+
+    private double sum = 0;
+    private double compensation = 0;
+
+    void add(double value) {
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - t) + value;
+        } else {
+            compensation += (value - t) + sum;
+        }
+        sum = t;
+    }
+
+    double value() {
+        return sum + compensation;
+    }
+}
@@ -0,0 +1,110 @@
+package experiments.network.viz.gephi;
+
+// When to stop a layout before the maximum number of iterations
+// Any of the enabled conditions is enough to stop:
+//   - relative displacement below a threshold during a window of iterations
+//   - swinging / traction ratio above a threshold on average over a window of iterations
+//     (the layout only jitters around its equilibrium)
+//   - wall clock budget exhausted
+// Displacement and ratio conditions only apply to layouts implementing ConvergentLayout
+
+public class ConvergenceCriterion {
+
+    private int minIterations = 20;
+    private int window = 10;
+    private double relativeDisplacementThreshold = 1e-3;
+    private double swingingTractionRatioThreshold = Double.NaN;
+    private long wallClockBudgetMillis = 0;
+
+    public static ConvergenceCriterion none() {
+        ConvergenceCriterion criterion = new ConvergenceCriterion();
+        criterion.setRelativeDisplacementThreshold(Double.NaN);
+        return criterion;
+    }
+
+    public static double relativeDisplacement(double totalDisplacement, int movingNodes,
+                                              double minX, double minY, double maxX, double maxY) {
+        double extent = Math.sqrt((maxX - minX) * (maxX - minX) + (maxY - minY) * (maxY - minY));
+        if (movingNodes == 0 || !(extent > 0)) {
+            return 0;
+        }
+        return totalDisplacement / movingNodes / extent;
+    }
+
+    public Tracker start() {
+        return new Tracker();
+    }
+
+    public void setMinIterations(int minIterations) {
+        this.minIterations = minIterations;
+    }
+
+    public void setWindow(int window) {
+        this.window = Math.max(1, window);
+    }
+
+    // NaN disables the condition
+    public void setRelativeDisplacementThreshold(double relativeDisplacementThreshold) {
+        this.relativeDisplacementThreshold = relativeDisplacementThreshold;
+    }
+
+    // NaN disables the condition
+    public void setSwingingTractionRatioThreshold(double swingingTractionRatioThreshold) {
+        this.swingingTractionRatioThreshold = swingingTractionRatioThreshold;
+    }
+
+    // 0 disables the condition
+    public void setWallClockBudgetMillis(long wallClockBudgetMillis) {
+        this.wallClockBudgetMillis = wallClockBudgetMillis;
+    }
+
+    public final class Tracker {
+        private final long t0 = System.currentTimeMillis();
+        private final double[] ratios = new double[window];
+        private int iterations;
+        private int iterationsBelowDisplacement;
+        private String reason;
+
+        // To be called after each iteration, with a Gephi layout or a layout engine
+        public boolean converged(Object layout) {
+            iterations++;
+            if (wallClockBudgetMillis > 0 && System.currentTimeMillis() - t0 >= wallClockBudgetMillis) {
+                reason = "wall clock budget of " + wallClockBudgetMillis + " ms exhausted";
+                return true;
+            }
+            if (!(layout instanceof ConvergentLayout convergentLayout)) {
+                return false;
+            }
+
+            double displacement = convergentLayout.getRelativeDisplacement();
+            iterationsBelowDisplacement = displacement < relativeDisplacementThreshold ? iterationsBelowDisplacement + 1 : 0;
+
+            double ratio = convergentLayout.getTotalSwinging() / convergentLayout.getTotalEffectiveTraction();
+            ratios[(iterations - 1) % window] = Double.isFinite(ratio) ? ratio : 0;
+
+            if (iterations < minIterations) {
+                return false;
+            }
+            if (iterationsBelowDisplacement >= window) {
+                reason = "relative displacement " + displacement + " below " + relativeDisplacementThreshold + " for " + window + " iterations";
+                return true;
+            }
+            if (!Double.isNaN(swingingTractionRatioThreshold) && iterations >= window) {
+                double meanRatio = 0;
+                for (double r : ratios) {
+                    meanRatio += r;
+                }
+                meanRatio /= window;
+                if (meanRatio > swingingTractionRatioThreshold) {
+                    reason = "swinging / traction ratio " + meanRatio + " above " + swingingTractionRatioThreshold + " over " + window + " iterations";
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package experiments.network.viz.gephi;
+
+// Layouts that report how much they moved in the last iteration, used to stop early
+
+public interface ConvergentLayout {
+
+    // Sum over nodes of mass * |force - previous force|, irregular movement
+    double getTotalSwinging();
+
+    // Sum over nodes of mass * |force + previous force| / 2, useful movement
+    double getTotalEffectiveTraction();
+
+    double getSpeed();
+
+    // Mean displacement of the moving nodes relative to the diagonal of the layout bounding box
+    double getRelativeDisplacement();
+}
@@ -0,0 +1,191 @@
+package experiments.network.viz.gephi;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+// ForceAtlas2Engine on float buffers: positions, forces, masses, sizes and edge weights take half the memory,
+// and the repulsion, bound by memory bandwidth on large grids, reads half the bytes.
+// Gephi keeps node positions as floats, so nothing is lost when they are written back.
+// Arithmetic is done in double and only stored as float: forces on a node are added in double and rounded once,
+// and the swinging, traction and displacement totals over all the nodes are compensated sums.
+// drift compares the positions with a double engine run from the same start, to validate the float results
+
+public final class FloatForceAtlas2Engine extends AbstractForceAtlas2Engine {
+
+    private final float[] x;
+    private final float[] y;
+    private float[] dx;
+    private float[] dy;
+    private float[] oldDx;
+    private float[] oldDy;
+    private final float[] mass;
+    private final float[] size;
+
+    private final float[] edgeWeights;
+
+    // Edge weights are expected already transformed for attraction (normalized, inverted, influence applied)
+    public FloatForceAtlas2Engine(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeWeights) {
+        super(nodeCount, edgeSources, edgeTargets, edgeWeights, null);
+        this.x = new float[nodeCount];
+        this.y = new float[nodeCount];
+        this.dx = new float[nodeCount];
+        this.dy = new float[nodeCount];
+        this.oldDx = new float[nodeCount];
+        this.oldDy = new float[nodeCount];
+        this.mass = new float[nodeCount];
+        this.size = new float[nodeCount];
+        this.edgeWeights = new float[edgeWeights.length];
+        for (int e = 0; e < edgeWeights.length; e++) {
+            this.edgeWeights[e] = (float) edgeWeights[e];
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            mass[i] = (float) initialMass(null, i);
+        }
+    }
+
+    public float[] x() {
+        return x;
+    }
+
+    public float[] y() {
+        return y;
+    }
+
+    public float[] size() {
+        return size;
+    }
+
+    @Override
+    protected void resetForces() {
+        float[] t = oldDx;
+        oldDx = dx;
+        dx = t;
+        t = oldDy;
+        oldDy = dy;
+        dy = t;
+        Arrays.fill(dx, 0);
+        Arrays.fill(dy, 0);
+    }
+
+    @Override
+    protected void buildTree(ExecutorService pool, int taskCount) {
+        repulsion.buildTree(pool, taskCount, nodeCount, x, y, mass, size);
+    }
+
+    @Override
+    protected void applyRepulsion(ExecutorService pool, int taskCount) {
+        repulsion.applyForces(pool, taskCount, nodeCount, x, y, mass, size,
+                scalingRatio, adjustSizes, barnesHutOptimize, barnesHutTheta, gravity, strongGravityMode,
+                dx, dy);
+    }
+
+    @Override
+    protected void applyAttraction(ExecutorService pool, int taskCount, double coefficient) {
+        attraction.apply(pool, taskCount, x, y, mass, size, edgeWeights,
+                linLogMode, outboundAttractionDistribution, adjustSizes, coefficient,
+                dx, dy);
+    }
+
+    @Override
+    protected void sumSwingingAndTraction() {
+        CompensatedSum swingingSum = new CompensatedSum();
+        CompensatedSum tractionSum = new CompensatedSum();
+        for (int n = 0; n < nodeCount; n++) {
+            if (!fixed[n]) {
+                double sx = (double) oldDx[n] - dx[n];
+                double sy = (double) oldDy[n] - dy[n];
+                double tx = (double) oldDx[n] + dx[n];
+                double ty = (double) oldDy[n] + dy[n];
+                swingingSum.add(mass[n] * Math.sqrt(sx * sx + sy * sy));
+                tractionSum.add(mass[n] * 0.5 * Math.sqrt(tx * tx + ty * ty));
+            }
+        }
+        totalSwinging = swingingSum.value();
+        totalEffectiveTraction = tractionSum.value();
+    }
+
+    @Override
+    protected void applyForces(double speed) {
+        CompensatedSum totalDisplacement = new CompensatedSum();
+        int movingNodes = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int n = 0; n < nodeCount; n++) {
+            if (!fixed[n]) {
+                double fx = dx[n];
+                double fy = dy[n];
+                double sx = (double) oldDx[n] - fx;
+                double sy = (double) oldDy[n] - fy;
+                double swinging = mass[n] * Math.sqrt(sx * sx + sy * sy);
+                double df = Math.sqrt(fx * fx + fy * fy);
+                double factor = speedFactor(speed, swinging, df);
+                x[n] = (float) (x[n] + fx * factor);
+                y[n] = (float) (y[n] + fy * factor);
+                totalDisplacement.add(df * factor);
+                movingNodes++;
+            }
+            minX = Math.min(minX, x[n]);
+            minY = Math.min(minY, y[n]);
+            maxX = Math.max(maxX, x[n]);
+            maxY = Math.max(maxY, y[n]);
+        }
+        relativeDisplacement = ConvergenceCriterion.relativeDisplacement(totalDisplacement.value(), movingNodes, minX, minY, maxX, maxY);
+    }
+
+    // Distance between the positions of this engine and those of a double engine on the same graph
+    public Drift drift(ForceAtlas2Engine reference) {
+        if (reference.getNodeCount() != nodeCount) {
+            throw new IllegalArgumentException("Reference engine with " + reference.getNodeCount() + " nodes, expected " + nodeCount);
+        }
+        double[] rx = reference.x();
+        double[] ry = reference.y();
+        CompensatedSum squares = new CompensatedSum();
+        double max = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int n = 0; n < nodeCount; n++) {
+            double distance = Math.hypot(x[n] - rx[n], y[n] - ry[n]);
+            squares.add(distance * distance);
+            max = Math.max(max, distance);
+            minX = Math.min(minX, rx[n]);
+            minY = Math.min(minY, ry[n]);
+            maxX = Math.max(maxX, rx[n]);
+            maxY = Math.max(maxY, ry[n]);
+        }
+        double rms = nodeCount > 0 ? Math.sqrt(squares.value() / nodeCount) : 0;
+        double diagonal = nodeCount > 0 ? Math.hypot(maxX - minX, maxY - minY) : 0;
+        return new Drift(rms, max, diagonal);
+    }
+
+    public static final class Drift {
+        public final double rms;
+        public final double max;
+        // Of the bounding box of the reference layout
+        public final double diagonal;
+
+        Drift(double rms, double max, double diagonal) {
+            this.rms = rms;
+            this.max = max;
+            this.diagonal = diagonal;
+        }
+
+        public double relativeRms() {
+            return diagonal > 0 ? rms / diagonal : 0;
+        }
+
+        public double relativeMax() {
+            return diagonal > 0 ? max / diagonal : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "rms %.4g (%.3g%% of the layout diagonal), max %.4g (%.3g%%)",
+                    rms, 100 * relativeRms(), max, 100 * relativeMax());
+        }
+    }
+}
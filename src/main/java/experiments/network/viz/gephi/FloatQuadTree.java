@@ -0,0 +1,154 @@
+package experiments.network.viz.gephi;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+// Barnes-Hut quadtree of the float engine: points and cell summaries are stored as floats,
+// half the memory read by every walk of the tree. Summaries are computed in double and rounded once,
+// and the force on a point is accumulated in double, in the force array given to applyRepulsion
+
+public final class FloatQuadTree extends AbstractQuadTree {
+
+    private float[] sortedX = new float[0];
+    private float[] sortedY = new float[0];
+    private float[] sortedMass = new float[0];
+    private float[] sortedSize = new float[0];
+
+    private float[] cellMass = new float[0];
+    private float[] cellMassCenterX = new float[0];
+    private float[] cellMassCenterY = new float[0];
+    private float[] cellMinX = new float[0];
+    private float[] cellMinY = new float[0];
+    private float[] cellMaxX = new float[0];
+    private float[] cellMaxY = new float[0];
+    private float[] cellSize = new float[0];
+
+    public FloatQuadTree() {
+        this(RepulsionKernel.get(), LEAF_CAPACITY);
+    }
+
+    public FloatQuadTree(RepulsionKernel kernel, int leafCapacity) {
+        super(kernel, leafCapacity);
+    }
+
+    public void build(ExecutorService pool, int taskCount, int n, float[] x, float[] y, float[] mass, float[] size) {
+        build(pool, taskCount, n, i -> x[i], i -> y[i], (from, to) -> {
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                sortedX[k] = x[i];
+                sortedY[k] = y[i];
+                sortedMass[k] = mass[i];
+                sortedSize[k] = size[i];
+            }
+        });
+    }
+
+    @Override
+    protected void summarizeLeaf(int c) {
+        double m = 0;
+        double mx = 0;
+        double my = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int k = cellStart[c]; k < cellEnd[c]; k++) {
+            m += sortedMass[k];
+            mx += (double) sortedX[k] * sortedMass[k];
+            my += (double) sortedY[k] * sortedMass[k];
+            minX = Math.min(minX, sortedX[k]);
+            minY = Math.min(minY, sortedY[k]);
+            maxX = Math.max(maxX, sortedX[k]);
+            maxY = Math.max(maxY, sortedY[k]);
+        }
+        setSummary(c, m, mx, my, minX, minY, maxX, maxY);
+    }
+
+    @Override
+    protected void summarizeInnerCell(int c) {
+        double m = 0;
+        double mx = 0;
+        double my = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int child = cellFirstChild[c]; child < cellFirstChild[c] + cellChildCount[c]; child++) {
+            m += cellMass[child];
+            mx += (double) cellMassCenterX[child] * cellMass[child];
+            my += (double) cellMassCenterY[child] * cellMass[child];
+            minX = Math.min(minX, cellMinX[child]);
+            minY = Math.min(minY, cellMinY[child]);
+            maxX = Math.max(maxX, cellMaxX[child]);
+            maxY = Math.max(maxY, cellMaxY[child]);
+        }
+        setSummary(c, m, mx, my, minX, minY, maxX, maxY);
+    }
+
+    private void setSummary(int c, double m, double mx, double my, double minX, double minY, double maxX, double maxY) {
+        double cx = mx / m;
+        double cy = my / m;
+        cellMass[c] = (float) m;
+        cellMassCenterX[c] = (float) cx;
+        cellMassCenterY[c] = (float) cy;
+        cellMinX[c] = (float) minX;
+        cellMinY[c] = (float) minY;
+        cellMaxX[c] = (float) maxX;
+        cellMaxY[c] = (float) maxY;
+        cellSize[c] = (float) cellSize(cx, cy, minX, minY, maxX, maxY);
+    }
+
+    // Repulsion on point i from all the other points, added to force[0] and force[1]
+    // Returns the number of cells and points it interacted with, a measure of its cost
+    public int applyRepulsion(double xi, double yi, double massi, double sizei,
+                              double coefficient, boolean adjustSizes, double theta, double[] force) {
+        if (cellCount > 0) {
+            return applyRepulsion(0, xi, yi, massi, sizei, coefficient, adjustSizes, theta, force);
+        }
+        return 0;
+    }
+
+    private int applyRepulsion(int c, double xi, double yi, double massi, double sizei,
+                               double coefficient, boolean adjustSizes, double theta, double[] force) {
+        double xDist = xi - cellMassCenterX[c];
+        double yDist = yi - cellMassCenterY[c];
+        double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+        if (!isExactLeaf(c, adjustSizes) && distance * theta > cellSize[c]) {
+            double factor = coefficient * massi * cellMass[c] / distance / distance;
+            force[0] += xDist * factor;
+            force[1] += yDist * factor;
+            return 1;
+        } else if (cellChildCount[c] == 0) {
+            // Point i may be one of them, with a zero force
+            kernel.repulse(xi, yi, massi, sizei, sortedX, sortedY, sortedMass, sortedSize, cellStart[c], cellEnd[c],
+                    coefficient, adjustSizes, force);
+            return 1 + cellEnd[c] - cellStart[c];
+        } else {
+            int interactions = 1;
+            for (int child = cellFirstChild[c]; child < cellFirstChild[c] + cellChildCount[c]; child++) {
+                interactions += applyRepulsion(child, xi, yi, massi, sizei, coefficient, adjustSizes, theta, force);
+            }
+            return interactions;
+        }
+    }
+
+    @Override
+    protected void growPoints(int capacity) {
+        sortedX = new float[capacity];
+        sortedY = new float[capacity];
+        sortedMass = new float[capacity];
+        sortedSize = new float[capacity];
+    }
+
+    @Override
+    protected void growCellSummaries(int capacity) {
+        cellMass = Arrays.copyOf(cellMass, capacity);
+        cellMassCenterX = Arrays.copyOf(cellMassCenterX, capacity);
+        cellMassCenterY = Arrays.copyOf(cellMassCenterY, capacity);
+        cellMinX = Arrays.copyOf(cellMinX, capacity);
+        cellMinY = Arrays.copyOf(cellMinY, capacity);
+        cellMaxX = Arrays.copyOf(cellMaxX, capacity);
+        cellMaxY = Arrays.copyOf(cellMaxY, capacity);
+        cellSize = Arrays.copyOf(cellSize, capacity);
+    }
+}
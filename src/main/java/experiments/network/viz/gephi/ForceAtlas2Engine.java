@@ -0,0 +1,126 @@
+package experiments.network.viz.gephi;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+// ForceAtlas2 iterations on primitive buffers (structure of arrays)
+// Positions, forces and masses are contiguous double arrays and the edges a CSR list,
+// nothing here touches Gephi nodes or their layout data
+
+public final class ForceAtlas2Engine extends AbstractForceAtlas2Engine {
+
+    private final double[] x;
+    private final double[] y;
+    private double[] dx;
+    private double[] dy;
+    private double[] oldDx;
+    private double[] oldDy;
+    private final double[] mass;
+    private final double[] size;
+
+    private final double[] edgeWeights;
+
+    // Edge weights are expected already transformed for attraction (normalized, inverted, influence applied)
+    public ForceAtlas2Engine(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeWeights) {
+        this(nodeCount, edgeSources, edgeTargets, edgeWeights, null);
+    }
+
+    // Masses of the nodes, or null for the Gephi mass, as for the nodes of a coarse graph standing for several nodes each
+    public ForceAtlas2Engine(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeWeights, double[] masses) {
+        super(nodeCount, edgeSources, edgeTargets, edgeWeights, masses);
+        this.x = new double[nodeCount];
+        this.y = new double[nodeCount];
+        this.dx = new double[nodeCount];
+        this.dy = new double[nodeCount];
+        this.oldDx = new double[nodeCount];
+        this.oldDy = new double[nodeCount];
+        this.mass = new double[nodeCount];
+        this.size = new double[nodeCount];
+        this.edgeWeights = edgeWeights;
+        for (int i = 0; i < nodeCount; i++) {
+            mass[i] = initialMass(masses, i);
+        }
+    }
+
+    public double[] x() {
+        return x;
+    }
+
+    public double[] y() {
+        return y;
+    }
+
+    public double[] size() {
+        return size;
+    }
+
+    @Override
+    protected void resetForces() {
+        double[] t = oldDx;
+        oldDx = dx;
+        dx = t;
+        t = oldDy;
+        oldDy = dy;
+        dy = t;
+        Arrays.fill(dx, 0);
+        Arrays.fill(dy, 0);
+    }
+
+    @Override
+    protected void buildTree(ExecutorService pool, int taskCount) {
+        repulsion.buildTree(pool, taskCount, nodeCount, x, y, mass, size);
+    }
+
+    @Override
+    protected void applyRepulsion(ExecutorService pool, int taskCount) {
+        repulsion.applyForces(pool, taskCount, nodeCount, x, y, mass, size,
+                scalingRatio, adjustSizes, barnesHutOptimize, barnesHutTheta, gravity, strongGravityMode,
+                dx, dy);
+    }
+
+    @Override
+    protected void applyAttraction(ExecutorService pool, int taskCount, double coefficient) {
+        attraction.apply(pool, taskCount, x, y, mass, size, edgeWeights,
+                linLogMode, outboundAttractionDistribution, adjustSizes, coefficient,
+                dx, dy);
+    }
+
+    @Override
+    protected void sumSwingingAndTraction() {
+        totalSwinging = 0d;  // How much irregular movement
+        totalEffectiveTraction = 0d;  // Hom much useful movement
+        for (int n = 0; n < nodeCount; n++) {
+            if (!fixed[n]) {
+                double swinging = Math.sqrt((oldDx[n] - dx[n]) * (oldDx[n] - dx[n]) + (oldDy[n] - dy[n]) * (oldDy[n] - dy[n]));
+                totalSwinging += mass[n] * swinging;
+                totalEffectiveTraction += mass[n] * 0.5 * Math.sqrt((oldDx[n] + dx[n]) * (oldDx[n] + dx[n]) + (oldDy[n] + dy[n]) * (oldDy[n] + dy[n]));
+            }
+        }
+    }
+
+    @Override
+    protected void applyForces(double speed) {
+        double totalDisplacement = 0;
+        int movingNodes = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int n = 0; n < nodeCount; n++) {
+            if (!fixed[n]) {
+                double swinging = mass[n] * Math.sqrt((oldDx[n] - dx[n]) * (oldDx[n] - dx[n]) + (oldDy[n] - dy[n]) * (oldDy[n] - dy[n]));
+                double df = Math.sqrt(dx[n] * dx[n] + dy[n] * dy[n]);
+                double factor = speedFactor(speed, swinging, df);
+                x[n] += dx[n] * factor;
+                y[n] += dy[n] * factor;
+                totalDisplacement += df * factor;
+                movingNodes++;
+            }
+            minX = Math.min(minX, x[n]);
+            minY = Math.min(minY, y[n]);
+            maxX = Math.max(maxX, x[n]);
+            maxY = Math.max(maxY, y[n]);
+        }
+        relativeDisplacement = ConvergenceCriterion.relativeDisplacement(totalDisplacement, movingNodes, minX, minY, maxX, maxY);
+    }
+}
@@ -3,22 +3,19 @@
 package experiments.network.viz.gephi;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import org.gephi.graph.api.*;
 import org.gephi.layout.plugin.forceAtlas2.*;
-import org.gephi.layout.plugin.forceAtlas2.ForceFactory.AttractionForce;
-import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
 import org.openide.util.Exceptions;
 import org.openide.util.NbBundle;
 
-public class ForceAtlas2Toquetear implements Layout {
+public class ForceAtlas2Toquetear implements Layout, ConvergentLayout, MeasuredLayout {
 
     private final ForceAtlas2Builder layoutBuilder;
     double outboundAttCompensation = 1;
@@ -28,8 +25,11 @@ public class ForceAtlas2Toquetear implements Layout {
     private double jitterTolerance;
     private double scalingRatio;
     private double gravity;
-    private double speed;
-    private double speedEfficiency;
+    // Node mode global speed, the engines have their own
+    private AdaptiveSpeed adaptiveSpeed = new AdaptiveSpeed();
+    private double totalSwinging;
+    private double totalEffectiveTraction;
+    private double relativeDisplacement;
     private boolean outboundAttractionDistribution;
     private boolean adjustSizes;
     private boolean barnesHutOptimize;
@@ -40,14 +40,48 @@ public class ForceAtlas2Toquetear implements Layout {
     private boolean invertedEdgeWeightsMode;
     private int threadCount;
     private int currentThreadCount;
-    private Region rootRegion;
+    private LayoutScheduler.Lease lease;
     private ExecutorService pool;
+    private final ParallelRepulsion repulsion = new ParallelRepulsion();
+    private double[] bufferX;
+    private double[] bufferY;
+    private double[] bufferMass;
+    private double[] bufferSize;
+    private double[] bufferDx;
+    private double[] bufferDy;
+    private double[] bufferWeights;
+    // Node mode: nodes, edges, edge endpoints by node index and attraction buffers, kept between iterations
+    // and rebuilt only when the number of nodes or edges changes
+    private GraphSnapshot nodeSnapshot;
+    private ParallelAttraction attraction;
+    // Arrays mode: the graph is copied once to primitive buffers and iterated there
+    private boolean arraysMode;
+    private int checkpointInterval;
+    private ForceAtlas2Engine engine;
+    // Float precision: floatEngine runs the layout, engine is only created to validate it
+    private boolean floatPrecision;
+    private int precisionValidationInterval;
+    private FloatForceAtlas2Engine floatEngine;
+    private GraphSnapshot engineSnapshot;
+    private int engineIteration;
+    private LayoutMetrics metrics = LayoutMetrics.disabled();
 
     public ForceAtlas2Toquetear(ForceAtlas2Builder layoutBuilder) {
         this.layoutBuilder = layoutBuilder;
         this.threadCount = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
     }
 
+    // Phases of each iteration are timed in both modes
+    @Override
+    public void setMetrics(LayoutMetrics metrics) {
+        this.metrics = metrics;
+        if (floatEngine != null) {
+            floatEngine.setMetrics(metrics);
+        } else if (engine != null) {
+            engine.setMetrics(metrics);
+        }
+    }
+
     public static void ensureSafeLayoutNodePositions(GraphModel graphModel) {
         Graph graph = graphModel.getGraph();
         NodeIterable nodesIterable = graph.getNodes();
@@ -70,8 +104,7 @@ public class ForceAtlas2Toquetear implements Layout {
     public void initAlgo() {
         ensureSafeLayoutNodePositions(graphModel);
 
-        speed = 1.;
-        speedEfficiency = 1.;
+        adaptiveSpeed = new AdaptiveSpeed();
 
         graph = graphModel.getGraphVisible();
 
@@ -79,25 +112,168 @@ public class ForceAtlas2Toquetear implements Layout {
         try {
             Node[] nodes = graph.getNodes().toArray();
 
-            // Initialise layout data
-            for (Node n : nodes) {
-                if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceAtlas2LayoutData)) {
-                    ForceAtlas2LayoutData nLayout = new ForceAtlas2LayoutData();
-                    n.setLayoutData(nLayout);
+            if (isArraysMode()) {
+                initEngine(nodes);
+            } else {
+                // Initialise layout data
+                for (Node n : nodes) {
+                    if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceAtlas2LayoutData)) {
+                        ForceAtlas2LayoutData nLayout = new ForceAtlas2LayoutData();
+                        n.setLayoutData(nLayout);
+                    }
+                    ForceAtlas2LayoutData nLayout = n.getLayoutData();
+                    nLayout.mass = 1 + graph.getDegree(n);
+                    nLayout.old_dx = 0;
+                    nLayout.old_dy = 0;
+                    nLayout.dx = 0;
+                    nLayout.dy = 0;
                 }
-                ForceAtlas2LayoutData nLayout = n.getLayoutData();
-                nLayout.mass = 1 + graph.getDegree(n);
-                nLayout.old_dx = 0;
-                nLayout.old_dy = 0;
-                nLayout.dx = 0;
-                nLayout.dy = 0;
+                initAttraction(nodes, graph.getEdges().toArray());
             }
-
-            pool = Executors.newFixedThreadPool(threadCount);
-            currentThreadCount = threadCount;
         } finally {
             graph.readUnlockAll();
         }
+        // Not while holding the graph lock
+        lease = LayoutScheduler.acquire(threadCount);
+        pool = lease.pool();
+        currentThreadCount = lease.threads();
+    }
+
+    private void initEngine(Node[] nodes) {
+        GraphSnapshot snapshot = GraphSnapshot.of(nodes, graph.getEdges().toArray());
+        boolean isDynamicWeight = graphModel.getEdgeTable().getColumn("weight").isDynamic();
+        Interval interval = graph.getView().getTimeInterval();
+        double[] edgeWeights = attractionWeights(snapshot.edges, new double[snapshot.edges.length], isDynamicWeight, interval);
+
+        engine = null;
+        floatEngine = null;
+        if (isFloatPrecision()) {
+            initFloatEngine(nodes, snapshot, edgeWeights);
+            if (precisionValidationInterval <= 0) {
+                engineSnapshot = snapshot;
+                engineIteration = 0;
+                return;
+            }
+        }
+        engine = new ForceAtlas2Engine(nodes.length, snapshot.edgeSources, snapshot.edgeTargets, edgeWeights);
+        configure(engine);
+        if (floatEngine == null) {
+            engine.setMetrics(metrics);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            engine.x()[i] = nodes[i].x();
+            engine.y()[i] = nodes[i].y();
+            engine.size()[i] = nodes[i].size();
+            engine.fixed()[i] = nodes[i].isFixed();
+        }
+        engineSnapshot = snapshot;
+        engineIteration = 0;
+    }
+
+    private void initFloatEngine(Node[] nodes, GraphSnapshot snapshot, double[] edgeWeights) {
+        floatEngine = new FloatForceAtlas2Engine(nodes.length, snapshot.edgeSources, snapshot.edgeTargets, edgeWeights);
+        configure(floatEngine);
+        floatEngine.setMetrics(metrics);
+        for (int i = 0; i < nodes.length; i++) {
+            floatEngine.x()[i] = nodes[i].x();
+            floatEngine.y()[i] = nodes[i].y();
+            floatEngine.size()[i] = nodes[i].size();
+            floatEngine.fixed()[i] = nodes[i].isFixed();
+        }
+    }
+
+    private void configure(AbstractForceAtlas2Engine e) {
+        e.setScalingRatio(getScalingRatio());
+        e.setStrongGravityMode(isStrongGravityMode());
+        e.setGravity(getGravity());
+        e.setOutboundAttractionDistribution(isOutboundAttractionDistribution());
+        e.setLinLogMode(isLinLogMode());
+        e.setAdjustSizes(isAdjustSizes());
+        e.setJitterTolerance(getJitterTolerance());
+        e.setBarnesHutOptimize(isBarnesHutOptimize());
+        e.setBarnesHutTheta(getBarnesHutTheta());
+    }
+
+    private void copyToBuffers(Node[] nodes) {
+        if (bufferX == null || bufferX.length < nodes.length) {
+            bufferX = new double[nodes.length];
+            bufferY = new double[nodes.length];
+            bufferMass = new double[nodes.length];
+            bufferSize = new double[nodes.length];
+            bufferDx = new double[nodes.length];
+            bufferDy = new double[nodes.length];
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            ForceAtlas2LayoutData nLayout = nodes[i].getLayoutData();
+            bufferX[i] = nodes[i].x();
+            bufferY[i] = nodes[i].y();
+            bufferMass[i] = nLayout.mass;
+            bufferSize[i] = nodes[i].size();
+            bufferDx[i] = nLayout.dx;
+            bufferDy[i] = nLayout.dy;
+        }
+    }
+
+    private void initAttraction(Node[] nodes, Edge[] edges) {
+        nodeSnapshot = GraphSnapshot.of(nodes, edges);
+        attraction = new ParallelAttraction(nodes.length, nodeSnapshot.edgeSources, nodeSnapshot.edgeTargets);
+    }
+
+    // Nodes and edges of the last snapshot, unless the graph has changed
+    private GraphSnapshot nodeSnapshot() {
+        if (nodeSnapshot == null || nodeSnapshot.nodes.length != graph.getNodeCount() || nodeSnapshot.edges.length != graph.getEdgeCount()) {
+            initAttraction(graph.getNodes().toArray(), graph.getEdges().toArray());
+        }
+        return nodeSnapshot;
+    }
+
+    private void applyAttraction(double[] weights, int taskCount) {
+        attraction.apply(pool, taskCount,
+                bufferX, bufferY, bufferMass, bufferSize, weights,
+                isLinLogMode(), isOutboundAttractionDistribution(), isAdjustSizes(),
+                isOutboundAttractionDistribution() ? outboundAttCompensation : 1,
+                bufferDx, bufferDy);
+    }
+
+    // Weights as used by the attraction force: inverted, normalized and with the edge weight influence applied,
+    // written to weights, one per edge
+    private double[] attractionWeights(Edge[] edges, double[] weights, boolean isDynamicWeight, Interval interval) {
+        if (getEdgeWeightInfluence() != 0) {
+            for (int e = 0; e < edges.length; e++) {
+                weights[e] = getEdgeWeight(edges[e], isDynamicWeight, interval);
+            }
+        }
+        return attractionWeights(weights, getEdgeWeightInfluence(), isNormalizeEdgeWeights());
+    }
+
+    // Transforms the weights in place
+    static double[] attractionWeights(double[] weights, double edgeWeightInfluence, boolean normalizeEdgeWeights) {
+        if (edgeWeightInfluence == 0) {
+            Arrays.fill(weights, 1.);
+            return weights;
+        }
+        if (normalizeEdgeWeights) {
+            double edgeWeightMin = Double.MAX_VALUE;
+            double edgeWeightMax = Double.MIN_VALUE;
+            for (double w : weights) {
+                edgeWeightMin = Math.min(w, edgeWeightMin);
+                edgeWeightMax = Math.max(w, edgeWeightMax);
+            }
+            if (edgeWeightMin < edgeWeightMax) {
+                for (int e = 0; e < weights.length; e++) {
+                    weights[e] = (weights[e] - edgeWeightMin) / (edgeWeightMax - edgeWeightMin);
+                }
+            } else {
+                Arrays.fill(weights, 1.);
+                return weights;
+            }
+        }
+        if (edgeWeightInfluence != 1) {
+            for (int e = 0; e < weights.length; e++) {
+                weights[e] = Math.pow(weights[e], edgeWeightInfluence);
+            }
+        }
+        return weights;
     }
 
     private double getEdgeWeight(Edge edge, boolean isDynamicWeight, Interval interval) {
@@ -117,15 +293,44 @@ public class ForceAtlas2Toquetear implements Layout {
         if (graphModel == null) {
             return;
         }
+        // Share of the scheduler threads, changes as other layouts start and end
+        currentThreadCount = lease.threads();
+        if (isArraysMode()) {
+            if (floatEngine != null) {
+                floatEngine.step(pool, 8 * currentThreadCount);
+                if (engine != null) {
+                    metrics.phase(LayoutMetrics.Phase.VALIDATION);
+                    engine.step(pool, 8 * currentThreadCount);
+                }
+            } else {
+                engine.step(pool, 8 * currentThreadCount);
+            }
+            engineIteration++;
+            if (floatEngine != null && engine != null && engineIteration % precisionValidationInterval == 0) {
+                metrics.validation("Float drift after " + engineIteration + " iterations: " + floatEngine.drift(engine));
+            }
+            if (checkpointInterval > 0 && engineIteration % checkpointInterval == 0) {
+                metrics.phase(LayoutMetrics.Phase.POSITIONS);
+                graph.readLock();
+                try {
+                    writeEnginePositions();
+                } finally {
+                    graph.readUnlockAll();
+                }
+            }
+            return;
+        }
         graph = graphModel.getGraphVisible();
         graph.readLock();
         boolean isDynamicWeight = graphModel.getEdgeTable().getColumn("weight").isDynamic();
         Interval interval = graph.getView().getTimeInterval();
 
         try {
-            Node[] nodes = graph.getNodes().toArray();
-            Edge[] edges = graph.getEdges().toArray();
+            GraphSnapshot snapshot = nodeSnapshot();
+            Node[] nodes = snapshot.nodes;
+            Edge[] edges = snapshot.edges;
 
+            metrics.phase(LayoutMetrics.Phase.RESET);
             // Initialise layout data
             for (Node n : nodes) {
                 if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceAtlas2LayoutData)) {
@@ -140,12 +345,6 @@ public class ForceAtlas2Toquetear implements Layout {
                 nLayout.dy = 0;
             }
 
-            // If Barnes Hut active, initialize root region
-            if (isBarnesHutOptimize()) {
-                rootRegion = new Region(nodes);
-                rootRegion.buildSubRegions();
-            }
-
             // If outboundAttractionDistribution active, compensate.
             if (isOutboundAttractionDistribution()) {
                 outboundAttCompensation = 0;
@@ -156,96 +355,42 @@ public class ForceAtlas2Toquetear implements Layout {
                 outboundAttCompensation /= nodes.length;
             }
 
-            // Repulsion (and gravity)
-            // NB: Muti-threaded
-            RepulsionForce repulsion = ForceFactory.builder.buildRepulsion(isAdjustSizes(), getScalingRatio());
-
+            // Forces are accumulated on primitive buffers, then copied to the layout data
             int taskCount = 8 *
                     currentThreadCount;  // The threadPool Executor Service will manage the fetching of tasks and threads.
             // We make more tasks than threads because some tasks may need more time to compute.
-            ArrayList<Future> threads = new ArrayList<>();
-            for (int t = taskCount; t > 0; t--) {
-                int from = (int) Math.floor(nodes.length * (t - 1) / taskCount);
-                int to = (int) Math.floor(nodes.length * t / taskCount);
-                Future future = pool.submit(
-                        new NodesThread(nodes, from, to, isBarnesHutOptimize(), getBarnesHutTheta(), getGravity(),
-                                isStrongGravityMode() ? (ForceFactory.builder.getStrongGravity(getScalingRatio())) :
-                                        repulsion, getScalingRatio(), rootRegion, repulsion));
-                threads.add(future);
-            }
-            for (Future future : threads) {
-                try {
-                    future.get();
-                } catch (Exception e) {
-                    throw new RuntimeException("Unable to layout " + this.getClass().getSimpleName() + ".", e);
-                }
+            copyToBuffers(nodes);
+
+            // Repulsion (and gravity)
+            // NB: Muti-threaded, the Barnes-Hut tree is rebuilt in place
+            if (isBarnesHutOptimize()) {
+                metrics.phase(LayoutMetrics.Phase.TREE_BUILD);
+                repulsion.buildTree(pool, taskCount, nodes.length, bufferX, bufferY, bufferMass, bufferSize);
             }
+            metrics.phase(LayoutMetrics.Phase.REPULSION);
+            repulsion.applyForces(pool, taskCount, nodes.length, bufferX, bufferY, bufferMass, bufferSize,
+                    getScalingRatio(), isAdjustSizes(), isBarnesHutOptimize(), getBarnesHutTheta(),
+                    getGravity(), isStrongGravityMode(),
+                    bufferDx, bufferDy);
 
             // Attraction
-            AttractionForce attraction = ForceFactory.builder
-                    .buildAttraction(isLinLogMode(), isOutboundAttractionDistribution(), isAdjustSizes(),
-                            1 * (isOutboundAttractionDistribution() ? outboundAttCompensation : 1));
-            if (getEdgeWeightInfluence() == 0) {
-                for (Edge e : edges) {
-                    attraction.apply(e.getSource(), e.getTarget(), 1);
-                }
-            } else if (getEdgeWeightInfluence() == 1) {
-                if (isNormalizeEdgeWeights()) {
-                    Double w;
-                    Double edgeWeightMin = Double.MAX_VALUE;
-                    Double edgeWeightMax = Double.MIN_VALUE;
-                    for (Edge e : edges) {
-                        w = getEdgeWeight(e, isDynamicWeight, interval);
-                        edgeWeightMin = Math.min(w, edgeWeightMin);
-                        edgeWeightMax = Math.max(w, edgeWeightMax);
-                    }
-                    if (edgeWeightMin < edgeWeightMax) {
-                        for (Edge e : edges) {
-                            w = (getEdgeWeight(e, isDynamicWeight, interval) - edgeWeightMin) / (edgeWeightMax - edgeWeightMin);
-                            attraction.apply(e.getSource(), e.getTarget(), w);
-                        }
-                    } else {
-                        for (Edge e : edges) {
-                            attraction.apply(e.getSource(), e.getTarget(), 1.);
-                        }
-                    }
-                } else {
-                    for (Edge e : edges) {
-                        attraction.apply(e.getSource(), e.getTarget(), getEdgeWeight(e, isDynamicWeight, interval));
-                    }
-                }
-            } else {
-                if (isNormalizeEdgeWeights()) {
-                    Double w;
-                    Double edgeWeightMin = Double.MAX_VALUE;
-                    Double edgeWeightMax = Double.MIN_VALUE;
-                    for (Edge e : edges) {
-                        w = getEdgeWeight(e, isDynamicWeight, interval);
-                        edgeWeightMin = Math.min(w, edgeWeightMin);
-                        edgeWeightMax = Math.max(w, edgeWeightMax);
-                    }
-                    if (edgeWeightMin < edgeWeightMax) {
-                        for (Edge e : edges) {
-                            w = (getEdgeWeight(e, isDynamicWeight, interval) - edgeWeightMin) / (edgeWeightMax - edgeWeightMin);
-                            attraction.apply(e.getSource(), e.getTarget(),
-                                    Math.pow(w, getEdgeWeightInfluence()));
-                        }
-                    } else {
-                        for (Edge e : edges) {
-                            attraction.apply(e.getSource(), e.getTarget(), 1.);
-                        }
-                    }
-                } else {
-                    for (Edge e : edges) {
-                        attraction.apply(e.getSource(), e.getTarget(),
-                                Math.pow(getEdgeWeight(e, isDynamicWeight, interval), getEdgeWeightInfluence()));
-                    }
-                }
+            // NB: Multi-threaded, same result whatever the thread count
+            metrics.phase(LayoutMetrics.Phase.ATTRACTION);
+            if (bufferWeights == null || bufferWeights.length != edges.length) {
+                bufferWeights = new double[edges.length];
+            }
+            applyAttraction(attractionWeights(edges, bufferWeights, isDynamicWeight, interval), taskCount);
+
+            for (int i = 0; i < nodes.length; i++) {
+                ForceAtlas2LayoutData nLayout = nodes[i].getLayoutData();
+                nLayout.dx = bufferDx[i];
+                nLayout.dy = bufferDy[i];
             }
 
             // Auto adjust speed
-            double totalSwinging = 0d;  // How much irregular movement
-            double totalEffectiveTraction = 0d;  // Hom much useful movement
+            metrics.phase(LayoutMetrics.Phase.SPEED);
+            totalSwinging = 0d;  // How much irregular movement
+            totalEffectiveTraction = 0d;  // Hom much useful movement
             for (Node n : nodes) {
                 ForceAtlas2LayoutData nLayout = n.getLayoutData();
                 if (!n.isFixed()) {
@@ -258,42 +403,14 @@ public class ForceAtlas2Toquetear implements Layout {
                 }
             }
             // We want that swingingMovement < tolerance * convergenceMovement
-
-            // Optimize jitter tolerance
-            // The 'right' jitter tolerance for this network. Bigger networks need more tolerance. Denser networks need less tolerance. Totally empiric.
-            double estimatedOptimalJitterTolerance = 0.05 * Math.sqrt(nodes.length);
-            double minJT = Math.sqrt(estimatedOptimalJitterTolerance);
-            double maxJT = 10;
-            double jt = jitterTolerance * Math.max(minJT,
-                    Math.min(maxJT, estimatedOptimalJitterTolerance * totalEffectiveTraction / Math.pow(nodes.length, 2)));
-
-            double minSpeedEfficiency = 0.05;
-
-            // Protection against erratic behavior
-            if (totalSwinging / totalEffectiveTraction > 2.0) {
-                if (speedEfficiency > minSpeedEfficiency) {
-                    speedEfficiency *= 0.5;
-                }
-                jt = Math.max(jt, jitterTolerance);
-            }
-
-            double targetSpeed = jt * speedEfficiency * totalEffectiveTraction / totalSwinging;
-
-            // Speed efficiency is how the speed really corresponds to the swinging vs. convergence tradeoff
-            // We adjust it slowly and carefully
-            if (totalSwinging > jt * totalEffectiveTraction) {
-                if (speedEfficiency > minSpeedEfficiency) {
-                    speedEfficiency *= 0.7;
-                }
-            } else if (speed < 1000) {
-                speedEfficiency *= 1.3;
-            }
-
-            // But the speed shoudn't rise too much too quickly, since it would make the convergence drop dramatically.
-            double maxRise = 0.5;   // Max rise: 50%
-            speed = speed + Math.min(targetSpeed - speed, maxRise * speed);
+            adaptiveSpeed.setJitterTolerance(jitterTolerance);
+            adaptiveSpeed.update(totalSwinging, totalEffectiveTraction, nodes.length);
+            double speed = adaptiveSpeed.getSpeed();
 
             // Apply forces
+            metrics.phase(LayoutMetrics.Phase.POSITIONS);
+            double totalDisplacement = 0;
+            int movingNodes = 0;
             if (isAdjustSizes()) {
                 // If nodes overlap prevention is active, it's not possible to trust the swinging mesure.
                 for (Node n : nodes) {
@@ -315,6 +432,8 @@ public class ForceAtlas2Toquetear implements Layout {
 
                         n.setX((float) x);
                         n.setY((float) y);
+                        totalDisplacement += Math.sqrt(nLayout.dx * nLayout.dx + nLayout.dy * nLayout.dy) * factor;
+                        movingNodes++;
                     }
                 }
             } else {
@@ -335,29 +454,102 @@ public class ForceAtlas2Toquetear implements Layout {
 
                         n.setX((float) x);
                         n.setY((float) y);
+                        totalDisplacement += Math.sqrt(nLayout.dx * nLayout.dx + nLayout.dy * nLayout.dy) * factor;
+                        movingNodes++;
                     }
                 }
             }
+            updateRelativeDisplacement(nodes, totalDisplacement, movingNodes);
         } finally {
             graph.readUnlockAll();
         }
     }
 
+    private void updateRelativeDisplacement(Node[] nodes, double totalDisplacement, int movingNodes) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Node n : nodes) {
+            minX = Math.min(minX, n.x());
+            minY = Math.min(minY, n.y());
+            maxX = Math.max(maxX, n.x());
+            maxY = Math.max(maxY, n.y());
+        }
+        relativeDisplacement = ConvergenceCriterion.relativeDisplacement(totalDisplacement, movingNodes, minX, minY, maxX, maxY);
+    }
+
+    private void writeEnginePositions() {
+        if (floatEngine != null) {
+            engineSnapshot.writePositions(floatEngine.x(), floatEngine.y());
+        } else {
+            engineSnapshot.writePositions(engine.x(), engine.y());
+        }
+    }
+
+    // The engine laying out in arrays mode, the double engine only validates the float one
+    private AbstractForceAtlas2Engine arraysEngine() {
+        return floatEngine != null ? floatEngine : engine;
+    }
+
+    @Override
+    public double getTotalSwinging() {
+        return isArraysMode() && arraysEngine() != null ? arraysEngine().getTotalSwinging() : totalSwinging;
+    }
+
+    @Override
+    public double getTotalEffectiveTraction() {
+        return isArraysMode() && arraysEngine() != null ? arraysEngine().getTotalEffectiveTraction() : totalEffectiveTraction;
+    }
+
+    @Override
+    public double getSpeed() {
+        return isArraysMode() && arraysEngine() != null ? arraysEngine().getSpeed() : adaptiveSpeed.getSpeed();
+    }
+
+    @Override
+    public double getRelativeDisplacement() {
+        return isArraysMode() && arraysEngine() != null ? arraysEngine().getRelativeDisplacement() : relativeDisplacement;
+    }
+
     @Override
     public boolean canAlgo() {
         return graphModel != null;
     }
 
+    // Also called after a failed initAlgo, with only part of the layout initialized
     @Override
     public void endAlgo() {
-        graph.readLock();
         try {
-            for (Node n : graph.getNodes()) {
-                n.setLayoutData(null);
+            if (graph != null) {
+                graph.readLock();
+                try {
+                    if (isArraysMode()) {
+                        if (floatEngine != null && engine != null) {
+                            metrics.validation("Float drift at the end, after " + engineIteration + " iterations: " + floatEngine.drift(engine));
+                        }
+                        if (engineSnapshot != null && arraysEngine() != null) {
+                            writeEnginePositions();
+                        }
+                        engine = null;
+                        floatEngine = null;
+                        engineSnapshot = null;
+                    } else {
+                        for (Node n : graph.getNodes()) {
+                            n.setLayoutData(null);
+                        }
+                        nodeSnapshot = null;
+                        attraction = null;
+                    }
+                } finally {
+                    graph.readUnlockAll();
+                }
             }
-            pool.shutdown();
         } finally {
-            graph.readUnlockAll();
+            if (lease != null) {
+                lease.close();
+                lease = null;
+            }
         }
     }
 
@@ -621,6 +813,42 @@ public class ForceAtlas2Toquetear implements Layout {
         this.adjustSizes = adjustSizes;
     }
 
+    public Boolean isArraysMode() {
+        return arraysMode;
+    }
+
+    public void setArraysMode(Boolean arraysMode) {
+        this.arraysMode = arraysMode;
+    }
+
+    public Boolean isFloatPrecision() {
+        return floatPrecision;
+    }
+
+    // Arrays mode on float buffers
+    public void setFloatPrecision(Boolean floatPrecision) {
+        this.floatPrecision = floatPrecision;
+    }
+
+    public Integer getPrecisionValidationInterval() {
+        return precisionValidationInterval;
+    }
+
+    // With float precision, runs a double engine along and reports the drift of the positions every given iterations
+    // and at the end, 0 not to validate
+    public void setPrecisionValidationInterval(Integer precisionValidationInterval) {
+        this.precisionValidationInterval = Math.max(0, precisionValidationInterval);
+    }
+
+    public Integer getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    // Iterations between copies of the positions back to the graph in arrays mode, 0 to copy only at the end
+    public void setCheckpointInterval(Integer checkpointInterval) {
+        this.checkpointInterval = Math.max(0, checkpointInterval);
+    }
+
     public Boolean isBarnesHutOptimize() {
         return barnesHutOptimize;
     }
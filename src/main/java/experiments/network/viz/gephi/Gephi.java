@@ -3,6 +3,7 @@ package experiments.network.viz.gephi;
 import com.itextpdf.text.PageSize;
 import org.gephi.appearance.api.AppearanceController;
 import org.gephi.appearance.api.AppearanceModel;
+import org.gephi.appearance.api.Function;
 import org.gephi.graph.api.*;
 import org.gephi.io.exporter.api.ExportController;
 import org.gephi.io.exporter.preview.PDFExporter;
@@ -20,16 +21,28 @@ import org.gephi.preview.api.PreviewProperties;
 import org.gephi.preview.api.PreviewProperty;
 import org.gephi.preview.types.DependantOriginalColor;
 import org.gephi.preview.types.EdgeColor;
+import org.gephi.project.api.Project;
 import org.gephi.project.api.ProjectController;
 import org.gephi.project.api.Workspace;
 import org.openide.util.Lookup;
 
 import java.awt.*;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Gephi {
+    private static final Object GLOBAL_LOCK = new Object();
     private static final int LAYOUT_MAX_ITERATIONS = 1000;
+    // Folder for a CSV and a JSON report of every layout run, none if not given
+    private static final String LAYOUT_REPORT_FOLDER = System.getProperty("viz.layout.report");
+    private static final AtomicInteger LAYOUT_REPORT_COUNT = new AtomicInteger();
+    // Iterations between reports of the drift of ATLAS2_FLOAT against the double engine, -Dviz.float.validate=..., 0 not to validate
+    private static final int FLOAT_VALIDATION_INTERVAL = Integer.getInteger("viz.float.validate", 0);
     private static final float YIFANHU_OPTIMAL_DISTANCE = 40f;
 
     private static final boolean DEBUG = false;
@@ -47,6 +60,9 @@ public class Gephi {
     private ProjectController projectController;
     private Workspace workspace;
     private boolean useWeights = false;
+    private ConvergenceCriterion convergence = new ConvergenceCriterion();
+    private int maxIterations = LAYOUT_MAX_ITERATIONS;
+    private final StreamingExporter streamingExporter = new StreamingExporter();
 
     public Gephi() {
         init();
@@ -69,22 +85,88 @@ public class Gephi {
         node.setY(ref.y() + dy);
     }
 
+    // Every instance has its own workspace, with its own graph, appearance and preview models,
+    // so layouts of different instances can run concurrently
     private void init() {
         projectController = Lookup.getDefault().lookup(ProjectController.class);
-        projectController.newProject();
-        workspace = projectController.getCurrentWorkspace();
+        synchronized (GLOBAL_LOCK) {
+            Project project = projectController.getCurrentProject();
+            if (project == null) {
+                projectController.newProject();
+                workspace = projectController.getCurrentWorkspace();
+            } else {
+                workspace = projectController.newWorkspace(project);
+            }
+        }
 
         appearanceController = Lookup.getDefault().lookup(AppearanceController.class);
-        appearanceModel = appearanceController.getModel();
+        appearanceModel = appearanceController.getModel(workspace);
 
         model = Lookup.getDefault().lookup(GraphController.class).getGraphModel(workspace);
         graph = model.getUndirectedGraph();
     }
 
+    // Releases the workspace, the instance can not be used after
+    public void close() {
+        synchronized (GLOBAL_LOCK) {
+            projectController.deleteWorkspace(workspace);
+        }
+    }
+
+    // The appearance controller and the exporters work on the current workspace of the project,
+    // that is shared by all instances: select our workspace and keep it selected while they run
+    private void inWorkspace(IORunnable action) throws IOException {
+        synchronized (GLOBAL_LOCK) {
+            projectController.openWorkspace(workspace);
+            action.run();
+        }
+    }
+
+    private interface IORunnable {
+        void run() throws IOException;
+    }
+
+    public void transform(Function function) {
+        try {
+            inWorkspace(() -> appearanceController.transform(function));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public void setUseWeights(boolean useWeights) {
         this.useWeights = useWeights;
     }
 
+    public void setConvergence(ConvergenceCriterion convergence) {
+        this.convergence = convergence;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    // Nodes of a previous run go back to their saved positions, new nodes are placed close to a laid out neighbor,
+    // or scattered over the laid out area if none of their neighbors has a position,
+    // so a layout without reset only has to refine. Returns the number of nodes restored, 0 needs a layout with reset
+    public int warmStart(PositionStore store) {
+        for (Node node : graph.getNodes()) {
+            node.setX(0);
+            node.setY(0);
+        }
+        int restored = store.restore(graph);
+        if (restored > 0) {
+            moveNewNodesCloseToLaidOutNeighbor();
+            scatterNodesWithoutPosition();
+        }
+        info("Warm start, " + restored + " of " + graph.getNodeCount() + " nodes restored");
+        return restored;
+    }
+
     public Node addNode(String id, String label) {
         Node node = graph.getNode(id);
         if (node != null) {
@@ -94,25 +176,120 @@ public class Gephi {
                 throw new RuntimeException("Noded " + id + " added twice with different labels, " + node.getLabel() + " <> " + label);
             }
         }
-        node = model.factory().newNode(id);
-        node.setLabel(label);
-        node.setSize(DEFAULT_NODE_SIZE);
+        node = newNode(id, label);
         graph.addNode(node);
 
         return node;
     }
 
-    public Edge addEdge(String label, Node n0, Node n1) {
-        return addEdge(label, n0, n1, Double.NaN);
+    // Nodes and edges created with newNode and newEdge are added in a single batch with addAll
+    public Node newNode(String id, String label) {
+        Node node = model.factory().newNode(id);
+        node.setLabel(label);
+        node.setSize(DEFAULT_NODE_SIZE);
+        return node;
     }
 
-    public Edge addEdge(String label, Node n0, Node n1, double weight) {
+    public Edge newEdge(String label, Node n0, Node n1, double weight) {
         boolean directed = false;
         Edge edge = model.factory().newEdge(n0, n1, directed);
         edge.setLabel(label);
         if (Double.isFinite(weight) && useWeights) {
             edge.setWeight(weight);
         }
+        return edge;
+    }
+
+    public void addAll(Collection<Node> nodes, Collection<Edge> edges) {
+        graph.writeLock();
+        try {
+            graph.addAllNodes(nodes);
+            graph.addAllEdges(edges);
+        } finally {
+            graph.writeUnlock();
+        }
+    }
+
+    // Copies the nodes and edges of another instance, with their attributes, colors, sizes and positions,
+    // so a graph built and styled once can be laid out several times with different settings
+    // Edge weights are copied only if this instance uses weights
+    public void copyGraph(Gephi source) {
+        Map<Object, Node> nodeCopies = new LinkedHashMap<>();
+        List<Edge> edges = new ArrayList<>();
+        source.graph.readLock();
+        try {
+            List<Column[]> nodeColumns = copyColumns(source.model.getNodeTable(), model.getNodeTable());
+            for (Node n : source.graph.getNodes()) {
+                Node copy = model.factory().newNode(n.getId());
+                copy.setLabel(n.getLabel());
+                copy.setSize(n.size());
+                copy.setX(n.x());
+                copy.setY(n.y());
+                copyColor(n, copy);
+                copyAttributes(n, copy, nodeColumns);
+                nodeCopies.put(n.getId(), copy);
+            }
+            List<Column[]> edgeColumns = copyColumns(source.model.getEdgeTable(), model.getEdgeTable());
+            for (Edge e : source.graph.getEdges()) {
+                Edge copy = newEdge(e.getLabel(), nodeCopies.get(e.getSource().getId()), nodeCopies.get(e.getTarget().getId()), e.getWeight());
+                copyColor(e, copy);
+                copyAttributes(e, copy, edgeColumns);
+                edges.add(copy);
+            }
+        } finally {
+            source.graph.readUnlockAll();
+        }
+        addAll(nodeCopies.values(), edges);
+    }
+
+    // Pairs of source and target columns for all the attribute columns of the source table,
+    // the ones missing in the target table are created
+    private static List<Column[]> copyColumns(Table source, Table target) {
+        List<Column[]> columns = new ArrayList<>();
+        for (Column column : source) {
+            if (column.isProperty()) {
+                continue;
+            }
+            Column targetColumn = target.hasColumn(column.getId())
+                    ? target.getColumn(column.getId())
+                    : target.addColumn(column.getId(), column.getTypeClass());
+            columns.add(new Column[]{column, targetColumn});
+        }
+        return columns;
+    }
+
+    private static void copyAttributes(Element source, Element target, List<Column[]> columns) {
+        for (Column[] column : columns) {
+            Object value = source.getAttribute(column[0]);
+            if (value != null) {
+                target.setAttribute(column[1], value);
+            }
+        }
+    }
+
+    // Component by component, an edge with alpha 0 takes the color of its source node when exported
+    private static void copyColor(ElementProperties source, ElementProperties target) {
+        target.setR(source.r());
+        target.setG(source.g());
+        target.setB(source.b());
+        target.setAlpha(source.alpha());
+    }
+
+    public void removeEdges(Collection<Edge> edges) {
+        graph.writeLock();
+        try {
+            graph.removeAllEdges(edges);
+        } finally {
+            graph.writeUnlock();
+        }
+    }
+
+    public Edge addEdge(String label, Node n0, Node n1) {
+        return addEdge(label, n0, n1, Double.NaN);
+    }
+
+    public Edge addEdge(String label, Node n0, Node n1, double weight) {
+        Edge edge = newEdge(label, n0, n1, weight);
         graph.addEdge(edge);
         return edge;
     }
@@ -124,15 +301,60 @@ public class Gephi {
         }
 
         Layout layout = createLayout(algorithm);
+        LayoutMetrics metrics = new LayoutMetrics(algorithm.name(), graph.getNodeCount());
+        if (layout instanceof MeasuredLayout measuredLayout) {
+            measuredLayout.setMetrics(metrics);
+        }
         long t0 = System.currentTimeMillis();
-        layout.initAlgo();
-        int iteration;
-        for (iteration = 0; iteration < LAYOUT_MAX_ITERATIONS && layout.canAlgo(); iteration++) {
-            layout.goAlgo();
+        ConvergenceCriterion.Tracker convergenceTracker = convergence.start();
+        int iteration = 0;
+        // Always ended, also when initAlgo fails, layouts release their share of the scheduler threads there
+        try {
+            layout.initAlgo();
+            while (iteration < maxIterations && layout.canAlgo()) {
+                metrics.startIteration();
+                layout.goAlgo();
+                if (layout instanceof ConvergentLayout c) {
+                    metrics.endIteration(c.getTotalSwinging(), c.getTotalEffectiveTraction(), c.getSpeed());
+                } else {
+                    metrics.endIteration(Double.NaN, Double.NaN, Double.NaN);
+                }
+                iteration++;
+                if (convergenceTracker.converged(layout)) {
+                    break;
+                }
+            }
+        } finally {
+            layout.endAlgo();
         }
-        layout.endAlgo();
         long t1 = System.currentTimeMillis();
         info("Layout " + algorithm + " took " + (t1 - t0) + " ms, " + iteration + " iterations");
+        if (convergenceTracker.getReason() != null) {
+            info("    stopped, " + convergenceTracker.getReason());
+        }
+        if (layout instanceof MeasuredLayout) {
+            info("    repulsion kernel " + RepulsionKernel.get());
+            info("    " + metrics.summary());
+            for (String validation : metrics.getValidations()) {
+                info("    " + validation);
+            }
+        }
+        writeLayoutReport(metrics, algorithm);
+    }
+
+    private static void writeLayoutReport(LayoutMetrics metrics, LayoutAlgorithm algorithm) {
+        if (LAYOUT_REPORT_FOLDER == null) {
+            return;
+        }
+        String name = "layout-" + LAYOUT_REPORT_COUNT.incrementAndGet() + "-" + algorithm;
+        Path folder = Path.of(LAYOUT_REPORT_FOLDER);
+        try {
+            Files.createDirectories(folder);
+            metrics.writeCsv(folder.resolve(name + ".csv"));
+            metrics.writeJson(folder.resolve(name + ".json"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public void keepPositions() {
@@ -141,6 +363,57 @@ public class Gephi {
         }
     }
 
+    // Incremental layout after a change of topology: only the nodes up to some hops away from the changed ones move,
+    // at most maxNodes of them, the closest to the change first, the rest of the graph keeps its positions.
+    // All new nodes are placed close to a laid out neighbor before, also the ones that will not move, beyond the hops or maxNodes.
+    // Returns the number of nodes allowed to move
+    public int relaxNeighbourhood(Collection<Node> changed, int hops, int maxNodes, LayoutAlgorithm algorithm, int iterations) {
+        moveNewNodesCloseToLaidOutNeighbor();
+        scatterNodesWithoutPosition();
+        Node[] nodes = graph.getNodes().toArray();
+        boolean[] wasFixed = new boolean[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            wasFixed[i] = nodes[i].isFixed();
+            nodes[i].setFixed(true);
+        }
+
+        // Breadth first from the changed nodes, freeing nodes in the order they are reached
+        Map<Node, Integer> distance = new HashMap<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        for (Node node : changed) {
+            if (distance.putIfAbsent(node, 0) == null) {
+                queue.add(node);
+            }
+        }
+        int moving = 0;
+        while (!queue.isEmpty() && moving < maxNodes) {
+            Node node = queue.poll();
+            node.setFixed(false);
+            moving++;
+            int d = distance.get(node);
+            if (d < hops) {
+                for (Node neighbor : graph.getNeighbors(node)) {
+                    if (distance.putIfAbsent(neighbor, d + 1) == null) {
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+
+        int savedMaxIterations = maxIterations;
+        try {
+            maxIterations = iterations;
+            layout(algorithm, false);
+        } finally {
+            maxIterations = savedMaxIterations;
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i].setFixed(wasFixed[i]);
+            }
+        }
+        info("Relaxed " + moving + " of " + nodes.length + " nodes around " + changed.size() + " changed nodes");
+        return moving;
+    }
+
     public void moveNewNodesCloseToLaidOutNeighbor() {
         boolean changed;
         int iteration = 0;
@@ -172,6 +445,33 @@ public class Gephi {
         } while (changed);
     }
 
+    // Nodes still without position after moveNewNodesCloseToLaidOutNeighbor, that have no laid out neighbor,
+    // are spread at random over the area of the laid out nodes, so they do not all start at the origin
+    public void scatterNodesWithoutPosition() {
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (Node node : graph.getNodes()) {
+            if (hasPosition(node)) {
+                minX = Math.min(minX, node.x());
+                minY = Math.min(minY, node.y());
+                maxX = Math.max(maxX, node.x());
+                maxY = Math.max(maxY, node.y());
+            }
+        }
+        if (minX > maxX) {
+            minX = minY = -100;
+            maxX = maxY = 100;
+        }
+        for (Node node : graph.getNodes()) {
+            if (!node.isFixed() && !hasPosition(node)) {
+                node.setX(minX + (float) Math.random() * (maxX - minX));
+                node.setY(minY + (float) Math.random() * (maxY - minY));
+            }
+        }
+    }
+
     public Layout createLayout(LayoutAlgorithm algorithm) {
         Layout layout = null;
         switch (algorithm) {
@@ -199,6 +499,31 @@ public class Gephi {
                 fa2i.setNormalizeEdgeWeights(true);
                 layout = fa2i;
                 break;
+            case ATLAS2_ARRAYS:
+                ForceAtlas2Toquetear fa2a = new ForceAtlas2Toquetear(null);
+                fa2a.resetPropertiesValues();
+                fa2a.setBarnesHutOptimize(true);
+                fa2a.setAdjustSizes(false);
+                fa2a.setNormalizeEdgeWeights(true);
+                fa2a.setArraysMode(true);
+                layout = fa2a;
+                break;
+            case ATLAS2_FLOAT:
+                ForceAtlas2Toquetear fa2f = new ForceAtlas2Toquetear(null);
+                fa2f.resetPropertiesValues();
+                fa2f.setBarnesHutOptimize(true);
+                fa2f.setAdjustSizes(false);
+                fa2f.setNormalizeEdgeWeights(true);
+                fa2f.setArraysMode(true);
+                fa2f.setFloatPrecision(true);
+                fa2f.setPrecisionValidationInterval(FLOAT_VALIDATION_INTERVAL);
+                layout = fa2f;
+                break;
+            case MULTILEVEL:
+                MultilevelLayout multilevel = new MultilevelLayoutBuilder().buildLayout();
+                multilevel.setConvergence(convergence);
+                layout = multilevel;
+                break;
             case ATLAS2_NO_WEIGHT:
                 ForceAtlas2 fa2now = new ForceAtlas2(null);
                 fa2now.resetPropertiesValues();
@@ -227,11 +552,12 @@ public class Gephi {
     public void export(Path path) throws IOException {
         ExportController ec = Lookup.getDefault().lookup(ExportController.class);
         GraphExporter exporter = (GraphExporter) ec.getExporter("gexf");
-        ec.exportFile(path.toFile(), exporter);
+        exporter.setWorkspace(workspace);
+        inWorkspace(() -> ec.exportFile(path.toFile(), exporter));
     }
 
     public void print(Path path) throws IOException, FontFormatException {
-        PreviewModel model = Lookup.getDefault().lookup(PreviewController.class).getModel();
+        PreviewModel model = Lookup.getDefault().lookup(PreviewController.class).getModel(workspace);
         PreviewProperties prop = model.getProperties();
         prop.putValue(PreviewProperty.SHOW_NODE_LABELS, true);
         prop.putValue(PreviewProperty.NODE_LABEL_COLOR, new DependantOriginalColor(Color.LIGHT_GRAY));
@@ -246,7 +572,17 @@ public class Gephi {
         PDFExporter pdfExporter = (PDFExporter) ec.getExporter("pdf");
         pdfExporter.setPageSize(PageSize.A4);
         pdfExporter.setLandscape(true);
-        ec.exportFile(path.toFile(), pdfExporter);
+        pdfExporter.setWorkspace(workspace);
+        inWorkspace(() -> ec.exportFile(path.toFile(), pdfExporter));
+    }
+
+    // Same drawing as print, without the preview model, see StreamingExporter for the formats
+    public void exportStreaming(Path path) throws IOException {
+        streamingExporter.export(graph, path);
+    }
+
+    public StreamingExporter getStreamingExporter() {
+        return streamingExporter;
     }
 
     private void debug(String message) {
@@ -260,6 +596,6 @@ public class Gephi {
     }
 
     public enum LayoutAlgorithm {
-        YIFANHU, ATLAS2, ATLAS2_TOQUETEAR, ATLAS2_NO_WEIGHT, EXPANSION, RANDOM;
+        YIFANHU, ATLAS2, ATLAS2_TOQUETEAR, ATLAS2_ARRAYS, ATLAS2_FLOAT, MULTILEVEL, ATLAS2_NO_WEIGHT, EXPANSION, RANDOM;
     }
 }
@@ -0,0 +1,190 @@
+package experiments.network.viz.gephi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hierarchy of coarser graphs for multilevel layouts
+// The first contraction merges nodes with the same group (voltage levels of a substation),
+// next ones merge pairs of nodes by heavy edge matching until the graph is small enough
+// or a contraction does not reduce it enough. Edges between merged nodes are dropped
+// and parallel edges are combined adding their weights. A coarse node has the mass of the nodes it merges,
+// the ForceAtlas2 mass (1 + degree) at the finest level, so coarse levels repel as the graph they stand for
+
+public final class GraphCoarsening {
+
+    public static final class Level {
+        public final int nodeCount;
+        public final int[] edgeSources;
+        public final int[] edgeTargets;
+        public final double[] edgeWeights;
+        public final double[] masses;
+        // Node of the next coarser level containing each node of this level, null for the coarsest level
+        public int[] parents;
+
+        Level(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeWeights, double[] masses) {
+            this.nodeCount = nodeCount;
+            this.edgeSources = edgeSources;
+            this.edgeTargets = edgeTargets;
+            this.edgeWeights = edgeWeights;
+            this.masses = masses;
+        }
+    }
+
+    private GraphCoarsening() {
+    }
+
+    // Levels from the finest (the given graph) to the coarsest
+    // groups can be null, nodes with a negative group are not merged by group
+    public static List<Level> coarsen(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] edgeWeights,
+                                      int[] groups, int coarsestSize, double minReduction) {
+        List<Level> levels = new ArrayList<>();
+        Level level = new Level(nodeCount, edgeSources, edgeTargets, edgeWeights, degreeMasses(nodeCount, edgeSources, edgeTargets));
+        levels.add(level);
+        if (groups != null) {
+            int[] parents = groupParents(groups);
+            if (countParents(parents) < level.nodeCount) {
+                level = contract(level, parents);
+                levels.add(level);
+            }
+        }
+        while (level.nodeCount > coarsestSize) {
+            int[] parents = heavyEdgeMatching(level);
+            int coarseCount = countParents(parents);
+            if (coarseCount > (1 - minReduction) * level.nodeCount) {
+                break;
+            }
+            level = contract(level, parents);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    // Same mass as Gephi: 1 + degree, self loops counted twice
+    private static double[] degreeMasses(int nodeCount, int[] edgeSources, int[] edgeTargets) {
+        double[] masses = new double[nodeCount];
+        Arrays.fill(masses, 1);
+        for (int e = 0; e < edgeSources.length; e++) {
+            masses[edgeSources[e]]++;
+            masses[edgeTargets[e]]++;
+        }
+        return masses;
+    }
+
+    private static int[] groupParents(int[] groups) {
+        Map<Integer, Integer> coarseByGroup = new HashMap<>();
+        int[] parents = new int[groups.length];
+        int coarseCount = 0;
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] < 0) {
+                parents[i] = coarseCount++;
+            } else {
+                Integer coarse = coarseByGroup.get(groups[i]);
+                if (coarse == null) {
+                    coarse = coarseCount++;
+                    coarseByGroup.put(groups[i], coarse);
+                }
+                parents[i] = coarse;
+            }
+        }
+        return parents;
+    }
+
+    private static int countParents(int[] parents) {
+        int count = 0;
+        for (int p : parents) {
+            count = Math.max(count, p + 1);
+        }
+        return count;
+    }
+
+    // Nodes are visited by increasing degree, each one is matched to the unmatched neighbor
+    // through the heaviest edge
+    private static int[] heavyEdgeMatching(Level level) {
+        int n = level.nodeCount;
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < level.edgeSources.length; e++) {
+            offsets[level.edgeSources[e] + 1]++;
+            offsets[level.edgeTargets[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] incident = new int[2 * level.edgeSources.length];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < level.edgeSources.length; e++) {
+            incident[next[level.edgeSources[e]]++] = e;
+            incident[next[level.edgeTargets[e]]++] = e;
+        }
+
+        Integer[] visitOrder = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            visitOrder[i] = i;
+        }
+        Arrays.sort(visitOrder, (a, b) -> Integer.compare(offsets[a + 1] - offsets[a], offsets[b + 1] - offsets[b]));
+
+        int[] parents = new int[n];
+        Arrays.fill(parents, -1);
+        int coarseCount = 0;
+        for (int u : visitOrder) {
+            if (parents[u] >= 0) {
+                continue;
+            }
+            int best = -1;
+            double bestWeight = Double.NEGATIVE_INFINITY;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int e = incident[k];
+                int v = level.edgeSources[e] == u ? level.edgeTargets[e] : level.edgeSources[e];
+                if (v != u && parents[v] < 0 && level.edgeWeights[e] > bestWeight) {
+                    best = v;
+                    bestWeight = level.edgeWeights[e];
+                }
+            }
+            parents[u] = coarseCount;
+            if (best >= 0) {
+                parents[best] = coarseCount;
+            }
+            coarseCount++;
+        }
+        return parents;
+    }
+
+    private static Level contract(Level level, int[] parents) {
+        level.parents = parents;
+        int coarseCount = countParents(parents);
+        Map<Long, Integer> edgeByEndpoints = new HashMap<>();
+        int[] sources = new int[level.edgeSources.length];
+        int[] targets = new int[level.edgeSources.length];
+        double[] weights = new double[level.edgeSources.length];
+        double[] masses = new double[coarseCount];
+        for (int i = 0; i < parents.length; i++) {
+            masses[parents[i]] += level.masses[i];
+        }
+        int edgeCount = 0;
+        for (int e = 0; e < level.edgeSources.length; e++) {
+            int a = parents[level.edgeSources[e]];
+            int b = parents[level.edgeTargets[e]];
+            if (a == b) {
+                continue;
+            }
+            long key = (long) Math.min(a, b) * coarseCount + Math.max(a, b);
+            Integer coarseEdge = edgeByEndpoints.get(key);
+            if (coarseEdge == null) {
+                sources[edgeCount] = a;
+                targets[edgeCount] = b;
+                weights[edgeCount] = level.edgeWeights[e];
+                edgeByEndpoints.put(key, edgeCount);
+                edgeCount++;
+            } else {
+                weights[coarseEdge] += level.edgeWeights[e];
+            }
+        }
+        return new Level(coarseCount,
+                Arrays.copyOf(sources, edgeCount),
+                Arrays.copyOf(targets, edgeCount),
+                Arrays.copyOf(weights, edgeCount),
+                masses);
+    }
+}
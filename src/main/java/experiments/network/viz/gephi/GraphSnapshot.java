@@ -0,0 +1,67 @@
+package experiments.network.viz.gephi;
+
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.Node;
+
+// Nodes and edges of a Gephi graph with edge endpoints resolved to node indices
+// The caller must hold the graph read lock while creating it
+
+final class GraphSnapshot {
+
+    final Node[] nodes;
+    final Edge[] edges;
+    final int[] edgeSources;
+    final int[] edgeTargets;
+
+    private GraphSnapshot(Node[] nodes, Edge[] edges) {
+        this.nodes = nodes;
+        this.edges = edges;
+        int[] indexByStoreId = indexByStoreId(nodes);
+        edgeSources = new int[edges.length];
+        edgeTargets = new int[edges.length];
+        for (int e = 0; e < edges.length; e++) {
+            edgeSources[e] = indexByStoreId[edges[e].getSource().getStoreId()];
+            edgeTargets[e] = indexByStoreId[edges[e].getTarget().getStoreId()];
+        }
+    }
+
+    static GraphSnapshot of(Graph graph) {
+        return new GraphSnapshot(graph.getNodes().toArray(), graph.getEdges().toArray());
+    }
+
+    static GraphSnapshot of(Node[] nodes, Edge[] edges) {
+        return new GraphSnapshot(nodes, edges);
+    }
+
+    private static int[] indexByStoreId(Node[] nodes) {
+        int maxStoreId = -1;
+        for (Node n : nodes) {
+            maxStoreId = Math.max(maxStoreId, n.getStoreId());
+        }
+        int[] indexByStoreId = new int[maxStoreId + 1];
+        for (int i = 0; i < nodes.length; i++) {
+            indexByStoreId[nodes[i].getStoreId()] = i;
+        }
+        return indexByStoreId;
+    }
+
+    // Copies the positions back to the graph, fixed nodes are not moved
+    void writePositions(float[] x, float[] y) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (!nodes[i].isFixed()) {
+                nodes[i].setX(x[i]);
+                nodes[i].setY(y[i]);
+            }
+        }
+    }
+
+    void writePositions(double[] x, double[] y) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (!nodes[i].isFixed()) {
+                nodes[i].setX((float) x[i]);
+                nodes[i].setY((float) y[i]);
+            }
+        }
+    }
+}
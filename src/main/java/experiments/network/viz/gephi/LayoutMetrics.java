@@ -0,0 +1,265 @@
+package experiments.network.viz.gephi;
+
+import jdk.jfr.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Time spent in each phase of every layout iteration, and the swinging, traction and speed after it,
+// and the results of the checks made by the layout, as the drift of the float engine against the double one
+// Phases, iterations and checks are also JFR events, recorded when a flight recording is running:
+//   java -XX:StartFlightRecording=filename=layout.jfr ...
+// and shown in JDK Mission Control under "Network Viz". The values of each iteration can be written as CSV or JSON
+
+public final class LayoutMetrics {
+
+    public enum Phase {
+        RESET, TREE_BUILD, REPULSION, ATTRACTION, SPEED, POSITIONS,
+        // Time spent checking the results, as the double engine run along the float one
+        VALIDATION
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final LayoutMetrics DISABLED = new LayoutMetrics("disabled", 0, false);
+
+    @Name("experiments.network.viz.LayoutPhase")
+    @Label("Layout Phase")
+    @Category({"Network Viz", "Layout"})
+    @StackTrace(false)
+    static final class PhaseEvent extends Event {
+        @Label("Layout")
+        String layout;
+        @Label("Phase")
+        String phase;
+        @Label("Iteration")
+        int iteration;
+    }
+
+    @Name("experiments.network.viz.LayoutIteration")
+    @Label("Layout Iteration")
+    @Category({"Network Viz", "Layout"})
+    @StackTrace(false)
+    static final class IterationEvent extends Event {
+        @Label("Layout")
+        String layout;
+        @Label("Iteration")
+        int iteration;
+        @Label("Nodes")
+        int nodes;
+        @Label("Swinging")
+        double swinging;
+        @Label("Traction")
+        double traction;
+        @Label("Speed")
+        double speed;
+    }
+
+    @Name("experiments.network.viz.LayoutValidation")
+    @Label("Layout Validation")
+    @Category({"Network Viz", "Layout"})
+    @StackTrace(false)
+    static final class ValidationEvent extends Event {
+        @Label("Layout")
+        String layout;
+        @Label("Iteration")
+        int iteration;
+        @Label("Result")
+        String result;
+    }
+
+    private final String layout;
+    private final int nodeCount;
+    private final boolean enabled;
+    // Per iteration, nanoseconds of each phase and of the whole iteration last
+    private final List<long[]> nanos = new ArrayList<>();
+    // Per iteration, swinging, traction and speed, NaN for layouts that do not report them
+    private final List<double[]> values = new ArrayList<>();
+    // Results of the checks, with the number of iterations done when they were made
+    private final List<String> validations = new ArrayList<>();
+    private final List<Integer> validationIterations = new ArrayList<>();
+
+    private long[] current;
+    private long iterationStart;
+    private IterationEvent iterationEvent;
+    private Phase phase;
+    private long phaseStart;
+    private PhaseEvent phaseEvent;
+
+    public LayoutMetrics(String layout, int nodeCount) {
+        this(layout, nodeCount, true);
+    }
+
+    private LayoutMetrics(String layout, int nodeCount, boolean enabled) {
+        this.layout = layout;
+        this.nodeCount = nodeCount;
+        this.enabled = enabled;
+    }
+
+    // Records nothing, for layouts run without metrics
+    public static LayoutMetrics disabled() {
+        return DISABLED;
+    }
+
+    public void startIteration() {
+        if (!enabled) {
+            return;
+        }
+        current = new long[PHASES.length + 1];
+        iterationEvent = new IterationEvent();
+        iterationEvent.begin();
+        iterationStart = System.nanoTime();
+    }
+
+    // Ends the running phase, if any, and starts the given one. Phases run again in the same iteration add up
+    public void phase(Phase next) {
+        if (!enabled || current == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        endPhase(now);
+        phase = next;
+        phaseStart = now;
+        phaseEvent = new PhaseEvent();
+        phaseEvent.begin();
+    }
+
+    public void endIteration(double swinging, double traction, double speed) {
+        if (!enabled || current == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        endPhase(now);
+        current[PHASES.length] = now - iterationStart;
+        nanos.add(current);
+        values.add(new double[]{swinging, traction, speed});
+        if (iterationEvent.shouldCommit()) {
+            iterationEvent.layout = layout;
+            iterationEvent.iteration = nanos.size() - 1;
+            iterationEvent.nodes = nodeCount;
+            iterationEvent.swinging = swinging;
+            iterationEvent.traction = traction;
+            iterationEvent.speed = speed;
+            iterationEvent.commit();
+        }
+        current = null;
+    }
+
+    private void endPhase(long now) {
+        if (phase == null) {
+            return;
+        }
+        current[phase.ordinal()] += now - phaseStart;
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.layout = layout;
+            phaseEvent.phase = phase.name();
+            phaseEvent.iteration = nanos.size();
+            phaseEvent.commit();
+        }
+        phase = null;
+    }
+
+    // Result of a check of the layout, reported with the totals
+    public void validation(String result) {
+        if (!enabled) {
+            return;
+        }
+        validations.add(result);
+        validationIterations.add(nanos.size());
+        ValidationEvent event = new ValidationEvent();
+        if (event.shouldCommit()) {
+            event.layout = layout;
+            event.iteration = nanos.size();
+            event.result = result;
+            event.commit();
+        }
+    }
+
+    public List<String> getValidations() {
+        return validations;
+    }
+
+    public int getIterationCount() {
+        return nanos.size();
+    }
+
+    public long getTotalNanos(Phase phase) {
+        long total = 0;
+        for (long[] row : nanos) {
+            total += row[phase.ordinal()];
+        }
+        return total;
+    }
+
+    // Milliseconds of the phases measured, in order
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase p : PHASES) {
+            long total = getTotalNanos(p);
+            if (total > 0) {
+                sb.append(sb.length() > 0 ? ", " : "").append(p.name().toLowerCase(Locale.ROOT)).append(' ').append(total / 1_000_000).append(" ms");
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : "no phases measured";
+    }
+
+    // One line per iteration, times in microseconds
+    public void writeCsv(Path path) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            w.write("layout,nodes,iteration");
+            for (Phase p : PHASES) {
+                w.write("," + p.name().toLowerCase(Locale.ROOT) + "_us");
+            }
+            w.write(",iteration_us,swinging,traction,speed\n");
+            for (int i = 0; i < nanos.size(); i++) {
+                long[] row = nanos.get(i);
+                double[] v = values.get(i);
+                w.write(layout + "," + nodeCount + "," + i);
+                for (long t : row) {
+                    w.write("," + t / 1000);
+                }
+                w.write("," + v[0] + "," + v[1] + "," + v[2] + "\n");
+            }
+        }
+    }
+
+    // Totals per phase, the values of each iteration and the validations, times in microseconds, undefined values as null
+    public void writeJson(Path path) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            w.write("{\"layout\":\"" + layout + "\",\"nodes\":" + nodeCount + ",\"iterations\":" + nanos.size() + ",\"totals_us\":{");
+            for (Phase p : PHASES) {
+                w.write((p.ordinal() > 0 ? "," : "") + "\"" + p.name().toLowerCase(Locale.ROOT) + "\":" + getTotalNanos(p) / 1000);
+            }
+            w.write("},\"per_iteration\":[");
+            for (int i = 0; i < nanos.size(); i++) {
+                long[] row = nanos.get(i);
+                double[] v = values.get(i);
+                w.write(i > 0 ? ",\n" : "\n");
+                w.write("{\"iteration\":" + i);
+                for (Phase p : PHASES) {
+                    w.write(",\"" + p.name().toLowerCase(Locale.ROOT) + "_us\":" + row[p.ordinal()] / 1000);
+                }
+                w.write(",\"iteration_us\":" + row[PHASES.length] / 1000
+                        + ",\"swinging\":" + json(v[0]) + ",\"traction\":" + json(v[1]) + ",\"speed\":" + json(v[2]) + "}");
+            }
+            w.write("\n],\"validations\":[");
+            for (int i = 0; i < validations.size(); i++) {
+                w.write(i > 0 ? ",\n" : "\n");
+                w.write("{\"iteration\":" + validationIterations.get(i) + ",\"result\":\"" + jsonString(validations.get(i)) + "\"}");
+            }
+            w.write("\n]}\n");
+        }
+    }
+
+    private static String jsonString(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String json(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "null";
+    }
+}
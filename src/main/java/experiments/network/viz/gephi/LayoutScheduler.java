@@ -0,0 +1,240 @@
+package experiments.network.viz.gephi;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Threads shared by all the layouts of the process
+// A single ForkJoinPool, created on first use and kept for the life of the process, runs the parallel steps of every layout,
+// so layouts do not start and stop their own threads and concurrent layouts never use more than its parallelism,
+// all the cores by default, -Dviz.layout.threads=...
+// Every running layout holds a lease and concurrent layouts get equal shares of the parallelism:
+// the tasks of a layout go through the executor of its lease, that keeps at most its share of them on the shared pool
+// and queues the others, and the share is re-read every time a task is submitted,
+// so a layout running alone uses all the threads and gives some up as soon as another one starts.
+// Fork/join tasks, that split themselves and let idle threads steal the pending halves, cannot be capped on the shared pool,
+// any of its idle threads would steal them: a lease runs them on a ForkJoinPool of its own, with its share as parallelism,
+// created on first use, replaced when the share has changed and shut down with the lease.
+// Exports, mostly waiting on files, run on a separate executor, with virtual threads when the runtime has them
+// (-Dviz.export.virtualThreads=false for platform threads)
+
+public final class LayoutScheduler {
+
+    private static final int TASKS_PER_THREAD = 8;
+    private static final int PARALLELISM = Math.max(1, Integer.getInteger("viz.layout.threads", Runtime.getRuntime().availableProcessors()));
+    private static final boolean EXPORT_VIRTUAL_THREADS = Boolean.parseBoolean(System.getProperty("viz.export.virtualThreads", "true"));
+
+    private static final AtomicInteger ACTIVE_LEASES = new AtomicInteger();
+
+    private LayoutScheduler() {
+    }
+
+    // Created on first use only
+    private static final class Pools {
+        private static final ForkJoinPool LAYOUT = new ForkJoinPool(PARALLELISM, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("layout-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        // Null when the runtime has no virtual threads or they are disabled
+        private static final ExecutorService VIRTUAL_EXPORT = EXPORT_VIRTUAL_THREADS ? createVirtualThreadExecutor() : null;
+        private static final ExecutorService EXPORT = VIRTUAL_EXPORT != null ? VIRTUAL_EXPORT : createExportExecutor();
+    }
+
+    public static int getParallelism() {
+        return PARALLELISM;
+    }
+
+    public static int getActiveLayoutCount() {
+        return ACTIVE_LEASES.get();
+    }
+
+    // maxThreads bounds the share of the layout, as its thread count property
+    public static Lease acquire(int maxThreads) {
+        ACTIVE_LEASES.incrementAndGet();
+        return new Lease(Math.max(1, maxThreads));
+    }
+
+    public static ExecutorService exportExecutor() {
+        return Pools.EXPORT;
+    }
+
+    public static boolean hasVirtualExportThreads() {
+        return Pools.VIRTUAL_EXPORT != null;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor is looked up at runtime, the code is built for Java 17
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Not available in this runtime, or a preview feature not enabled
+            return null;
+        }
+    }
+
+    private static ExecutorService createExportExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "export-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Runs a fork/join task on the executor of a lease, within its share, or on a ForkJoinPool,
+    // false for other executors, that cannot run it
+    static boolean invoke(ExecutorService pool, ForkJoinTask<?> task) {
+        if (pool instanceof ShareExecutor share) {
+            share.lease.invoke(task);
+            return true;
+        }
+        if (pool instanceof ForkJoinPool forkJoinPool) {
+            forkJoinPool.invoke(task);
+            return true;
+        }
+        return false;
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private static final AtomicInteger FORK_JOIN_POOLS = new AtomicInteger();
+
+        private final int maxThreads;
+        private final ExecutorService pool = new ShareExecutor(this);
+        private ForkJoinPool forkJoinPool;
+        private boolean closed = false;
+
+        private Lease(int maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+
+        // Runs the tasks of the layout on the shared pool, never more than threads() of them at the same time
+        public ExecutorService pool() {
+            return pool;
+        }
+
+        // Equal share of the pool among the layouts running now
+        public int threads() {
+            return Math.max(1, Math.min(maxThreads, PARALLELISM / Math.max(1, ACTIVE_LEASES.get())));
+        }
+
+        // More tasks than threads, some of them take longer
+        public int taskCount() {
+            return TASKS_PER_THREAD * threads();
+        }
+
+        // Runs the task and its subtasks on at most threads() threads, stealing only among them
+        public synchronized void invoke(ForkJoinTask<?> task) {
+            if (closed) {
+                throw new IllegalStateException("Lease closed");
+            }
+            int threads = threads();
+            if (forkJoinPool == null || forkJoinPool.getParallelism() != threads) {
+                if (forkJoinPool != null) {
+                    forkJoinPool.shutdown();
+                }
+                String name = "layout-fj-" + FORK_JOIN_POOLS.incrementAndGet() + "-";
+                forkJoinPool = new ForkJoinPool(threads, p -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    thread.setName(name + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+            }
+            forkJoinPool.invoke(task);
+        }
+
+        // Pool of the fork/join tasks, null before the first one
+        synchronized ForkJoinPool forkJoinPool() {
+            return forkJoinPool;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                ACTIVE_LEASES.decrementAndGet();
+                if (forkJoinPool != null) {
+                    forkJoinPool.shutdown();
+                }
+            }
+        }
+    }
+
+    // Tasks of a lease are queued here and run by at most threads() drainers on the shared pool,
+    // each drainer runs queued tasks until there are none left, so a task never waits for a thread of another layout.
+    // The threads belong to the shared pool, shutting down this executor does not stop them
+    private static final class ShareExecutor extends AbstractExecutorService {
+        private final Lease lease;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger drainers = new AtomicInteger();
+
+        private ShareExecutor(Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            pending.add(task);
+            startDrainers();
+        }
+
+        private void startDrainers() {
+            while (!pending.isEmpty()) {
+                int running = drainers.get();
+                if (running >= lease.threads()) {
+                    return;
+                }
+                if (drainers.compareAndSet(running, running + 1)) {
+                    Pools.LAYOUT.execute(this::drain);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    task.run();
+                }
+            } finally {
+                drainers.decrementAndGet();
+                // A task queued after the last poll, while this drainer still counted as running
+                startDrainers();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package experiments.network.viz.gephi;
+
+// Layouts that time the phases of each iteration on the metrics given before initAlgo
+
+public interface MeasuredLayout {
+
+    void setMetrics(LayoutMetrics metrics);
+}
@@ -0,0 +1,364 @@
+package experiments.network.viz.gephi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.gephi.graph.api.*;
+import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutProperty;
+import org.openide.util.Exceptions;
+
+// Multilevel ForceAtlas2 (coarsen, lay out, refine)
+// The graph is coarsened first by the node group column (voltage levels in the same substation)
+// and then by heavy edge matching. The coarsest graph is laid out, and positions are prolonged
+// level by level, each node starting close to its coarse node, followed by a short refinement.
+// Same idea as laying out the backbone first and then moving new nodes close to laid out neighbors,
+// but with all the levels computed automatically.
+// Every call to goAlgo is one iteration at the current level, each level stops early on the convergence criterion
+
+public class MultilevelLayout implements Layout, MeasuredLayout {
+
+    private static final int COARSEST_SIZE = 50;
+    private static final double MIN_REDUCTION = 0.1;
+    private static final int COARSEST_ITERATIONS = 300;
+    private static final int REFINEMENT_ITERATIONS = 50;
+    private static final int BARNES_HUT_MIN_NODES = 1000;
+    private static final double PROLONGATION_JITTER = 0.1;
+
+    private final LayoutBuilder layoutBuilder;
+    private GraphModel graphModel;
+    private ConvergenceCriterion convergence = new ConvergenceCriterion();
+    private String groupColumn;
+    private double edgeWeightInfluence;
+    private boolean normalizeEdgeWeights;
+    private double barnesHutTheta;
+    private int threadCount;
+
+    private LayoutScheduler.Lease lease;
+    private ExecutorService pool;
+    private double scalingRatio;
+    private GraphSnapshot snapshot;
+    private List<GraphCoarsening.Level> levels;
+    private double[][] levelX;
+    private double[][] levelY;
+    private boolean[][] levelFixed;
+    private int currentLevel;
+    private int levelIteration;
+    private ForceAtlas2Engine engine;
+    private ConvergenceCriterion.Tracker convergenceTracker;
+    private boolean finished;
+    private final Random random = new Random(1);
+    private LayoutMetrics metrics = LayoutMetrics.disabled();
+
+    public MultilevelLayout(LayoutBuilder layoutBuilder) {
+        this.layoutBuilder = layoutBuilder;
+        resetPropertiesValues();
+    }
+
+    @Override
+    public void setMetrics(LayoutMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void initAlgo() {
+        ForceAtlas2Toquetear.ensureSafeLayoutNodePositions(graphModel);
+        Graph graph = graphModel.getGraphVisible();
+        graph.readLock();
+        try {
+            snapshot = GraphSnapshot.of(graph);
+            double[] weights = new double[snapshot.edges.length];
+            for (int e = 0; e < weights.length; e++) {
+                weights[e] = snapshot.edges[e].getWeight();
+            }
+            ForceAtlas2Toquetear.attractionWeights(weights, edgeWeightInfluence, normalizeEdgeWeights);
+            levels = GraphCoarsening.coarsen(snapshot.nodes.length, snapshot.edgeSources, snapshot.edgeTargets, weights,
+                    groups(), COARSEST_SIZE, MIN_REDUCTION);
+            initLevelPositions();
+        } finally {
+            graph.readUnlockAll();
+        }
+        scalingRatio = snapshot.nodes.length >= 100 ? 2.0 : 10.0;
+        lease = LayoutScheduler.acquire(threadCount);
+        pool = lease.pool();
+        finished = false;
+        startLevel(levels.size() - 1);
+    }
+
+    private int[] groups() {
+        Column column = graphModel.getNodeTable().getColumn(groupColumn);
+        if (column == null) {
+            return null;
+        }
+        Map<Object, Integer> groupIds = new HashMap<>();
+        int[] groups = new int[snapshot.nodes.length];
+        for (int i = 0; i < groups.length; i++) {
+            Object value = snapshot.nodes[i].getAttribute(column);
+            groups[i] = value == null ? -1 : groupIds.computeIfAbsent(value, v -> groupIds.size());
+        }
+        return groups;
+    }
+
+    // Coarse nodes start at the mass center of their nodes, or of their fixed nodes if they have any
+    private void initLevelPositions() {
+        levelX = new double[levels.size()][];
+        levelY = new double[levels.size()][];
+        levelFixed = new boolean[levels.size()][];
+        int n = snapshot.nodes.length;
+        levelX[0] = new double[n];
+        levelY[0] = new double[n];
+        levelFixed[0] = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            levelX[0][i] = snapshot.nodes[i].x();
+            levelY[0][i] = snapshot.nodes[i].y();
+            levelFixed[0][i] = snapshot.nodes[i].isFixed();
+        }
+        for (int l = 1; l < levels.size(); l++) {
+            int[] parents = levels.get(l - 1).parents;
+            int coarseCount = levels.get(l).nodeCount;
+            double[] x = new double[coarseCount];
+            double[] y = new double[coarseCount];
+            boolean[] fixed = new boolean[coarseCount];
+            int[] count = new int[coarseCount];
+            for (int i = 0; i < parents.length; i++) {
+                fixed[parents[i]] |= levelFixed[l - 1][i];
+            }
+            for (int i = 0; i < parents.length; i++) {
+                int p = parents[i];
+                if (fixed[p] == levelFixed[l - 1][i]) {
+                    x[p] += levelX[l - 1][i];
+                    y[p] += levelY[l - 1][i];
+                    count[p]++;
+                }
+            }
+            for (int p = 0; p < coarseCount; p++) {
+                x[p] /= count[p];
+                y[p] /= count[p];
+            }
+            levelX[l] = x;
+            levelY[l] = y;
+            levelFixed[l] = fixed;
+        }
+    }
+
+    private void startLevel(int l) {
+        GraphCoarsening.Level level = levels.get(l);
+        engine = new ForceAtlas2Engine(level.nodeCount, level.edgeSources, level.edgeTargets, level.edgeWeights, level.masses);
+        engine.setScalingRatio(scalingRatio);
+        engine.setBarnesHutOptimize(level.nodeCount >= BARNES_HUT_MIN_NODES);
+        engine.setBarnesHutTheta(barnesHutTheta);
+        engine.setMetrics(metrics);
+        System.arraycopy(levelX[l], 0, engine.x(), 0, level.nodeCount);
+        System.arraycopy(levelY[l], 0, engine.y(), 0, level.nodeCount);
+        System.arraycopy(levelFixed[l], 0, engine.fixed(), 0, level.nodeCount);
+        currentLevel = l;
+        levelIteration = 0;
+        convergenceTracker = convergence.start();
+    }
+
+    // Nodes of the finer level start around their coarse node, fixed nodes keep their position
+    private void prolong() {
+        int fine = currentLevel - 1;
+        int[] parents = levels.get(fine).parents;
+        double[] coarseX = engine.x();
+        double[] coarseY = engine.y();
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < engine.getNodeCount(); p++) {
+            minX = Math.min(minX, coarseX[p]);
+            minY = Math.min(minY, coarseY[p]);
+            maxX = Math.max(maxX, coarseX[p]);
+            maxY = Math.max(maxY, coarseY[p]);
+        }
+        double extent = Math.max(maxX - minX, maxY - minY);
+        double jitter = extent > 0 ? PROLONGATION_JITTER * extent / Math.sqrt(engine.getNodeCount()) : 1;
+        for (int i = 0; i < parents.length; i++) {
+            if (!levelFixed[fine][i]) {
+                levelX[fine][i] = coarseX[parents[i]] + (random.nextDouble() - 0.5) * jitter;
+                levelY[fine][i] = coarseY[parents[i]] + (random.nextDouble() - 0.5) * jitter;
+            }
+        }
+        startLevel(fine);
+    }
+
+    @Override
+    public void goAlgo() {
+        engine.step(pool, lease.taskCount());
+        levelIteration++;
+        int maxIterations = currentLevel == levels.size() - 1 ? COARSEST_ITERATIONS : REFINEMENT_ITERATIONS;
+        if (levelIteration >= maxIterations || convergenceTracker.converged(engine)) {
+            if (currentLevel == 0) {
+                finished = true;
+            } else {
+                prolong();
+            }
+        }
+    }
+
+    @Override
+    public boolean canAlgo() {
+        return graphModel != null && !finished;
+    }
+
+    // Also called after a failed initAlgo, with only part of the layout initialized
+    @Override
+    public void endAlgo() {
+        try {
+            if (engine != null) {
+                // If stopped before reaching the finest level, prolong without refinement
+                while (currentLevel > 0) {
+                    prolong();
+                }
+                Graph graph = graphModel.getGraphVisible();
+                graph.readLock();
+                try {
+                    snapshot.writePositions(engine.x(), engine.y());
+                } finally {
+                    graph.readUnlockAll();
+                }
+            }
+        } finally {
+            if (lease != null) {
+                lease.close();
+                lease = null;
+            }
+        }
+        engine = null;
+        snapshot = null;
+        levels = null;
+        levelX = null;
+        levelY = null;
+        levelFixed = null;
+    }
+
+    @Override
+    public LayoutProperty[] getProperties() {
+        List<LayoutProperty> properties = new ArrayList<>();
+        final String multilevelCoarsening = "Coarsening";
+        final String multilevelBehavior = "Behavior";
+        final String multilevelPerformance = "Performance";
+
+        try {
+            properties.add(LayoutProperty.createProperty(
+                    this, String.class,
+                    "Group column",
+                    multilevelCoarsening,
+                    "Multilevel.groupColumn.name",
+                    "Node column merged first, nodes with the same value become a single coarse node",
+                    "getGroupColumn", "setGroupColumn"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    "Edge Weight Influence",
+                    multilevelBehavior,
+                    "Multilevel.edgeWeightInfluence.name",
+                    "How much influence you give to the edges weight. 0 is \"no influence\" and 1 is \"normal\"",
+                    "getEdgeWeightInfluence", "setEdgeWeightInfluence"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    "Normalize edge weights",
+                    multilevelBehavior,
+                    "Multilevel.normalizeEdgeWeights.name",
+                    "Normalize edge weights to the interval [0, 1] before the influence is applied",
+                    "isNormalizeEdgeWeights", "setNormalizeEdgeWeights"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    "Approximation",
+                    multilevelPerformance,
+                    "Multilevel.barnesHutTheta.name",
+                    "Theta of the Barnes Hut optimization, used on levels of at least " + BARNES_HUT_MIN_NODES + " nodes",
+                    "getBarnesHutTheta", "setBarnesHutTheta"));
+
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    "Threads number",
+                    multilevelPerformance,
+                    "Multilevel.threads.name",
+                    "Maximum number of threads of the layout",
+                    "getThreadsCount", "setThreadsCount"));
+
+        } catch (Exception e) {
+            Exceptions.printStackTrace(e);
+        }
+
+        return properties.toArray(new LayoutProperty[0]);
+    }
+
+    @Override
+    public void resetPropertiesValues() {
+        setGroupColumn("substation");
+        setEdgeWeightInfluence(1.);
+        setNormalizeEdgeWeights(true);
+        setBarnesHutTheta(1.2);
+        setThreadsCount(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    @Override
+    public LayoutBuilder getBuilder() {
+        return layoutBuilder;
+    }
+
+    @Override
+    public void setGraphModel(GraphModel graphModel) {
+        this.graphModel = graphModel;
+    }
+
+    public ConvergenceCriterion getConvergence() {
+        return convergence;
+    }
+
+    // Criterion to stop each level before its maximum number of iterations
+    public void setConvergence(ConvergenceCriterion convergence) {
+        this.convergence = convergence;
+    }
+
+    public String getGroupColumn() {
+        return groupColumn;
+    }
+
+    // Node column used for the first coarsening, nodes with the same value are merged
+    public void setGroupColumn(String groupColumn) {
+        this.groupColumn = groupColumn;
+    }
+
+    public Double getEdgeWeightInfluence() {
+        return edgeWeightInfluence;
+    }
+
+    public void setEdgeWeightInfluence(Double edgeWeightInfluence) {
+        this.edgeWeightInfluence = edgeWeightInfluence;
+    }
+
+    public Boolean isNormalizeEdgeWeights() {
+        return normalizeEdgeWeights;
+    }
+
+    public void setNormalizeEdgeWeights(Boolean normalizeEdgeWeights) {
+        this.normalizeEdgeWeights = normalizeEdgeWeights;
+    }
+
+    public Double getBarnesHutTheta() {
+        return barnesHutTheta;
+    }
+
+    public void setBarnesHutTheta(Double barnesHutTheta) {
+        this.barnesHutTheta = barnesHutTheta;
+    }
+
+    public Integer getThreadsCount() {
+        return threadCount;
+    }
+
+    public void setThreadsCount(Integer threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+}
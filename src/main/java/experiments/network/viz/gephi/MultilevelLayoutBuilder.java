@@ -0,0 +1,56 @@
+package experiments.network.viz.gephi;
+
+import javax.swing.Icon;
+import javax.swing.JPanel;
+
+import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutUI;
+
+public class MultilevelLayoutBuilder implements LayoutBuilder {
+
+    private final MultilevelLayoutUI ui = new MultilevelLayoutUI();
+
+    @Override
+    public String getName() {
+        return "Multilevel ForceAtlas 2";
+    }
+
+    @Override
+    public LayoutUI getUI() {
+        return ui;
+    }
+
+    @Override
+    public MultilevelLayout buildLayout() {
+        return new MultilevelLayout(this);
+    }
+
+    private static class MultilevelLayoutUI implements LayoutUI {
+
+        @Override
+        public String getDescription() {
+            return "ForceAtlas2 on a hierarchy of coarser graphs, from the coarsest to the given one";
+        }
+
+        @Override
+        public Icon getIcon() {
+            return null;
+        }
+
+        @Override
+        public JPanel getSimplePanel(Layout layout) {
+            return null;
+        }
+
+        @Override
+        public int getQualityRank() {
+            return 4;
+        }
+
+        @Override
+        public int getSpeedRank() {
+            return 5;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package experiments.network.viz.gephi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// ForceAtlas2 edge attraction computed in parallel
+// Each edge force is computed once into per-edge buffers (partitioned by edges),
+// then each node adds the forces of its incident edges in edge order (partitioned by nodes).
+// No two tasks write the same slot and the order of the sums does not depend on the partition,
+// so results are identical whatever the number of threads, and identical to the sequential loop
+
+public final class ParallelAttraction {
+
+    private final int nodeCount;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    // CSR: edges incident to node i are nodeEdges[nodeEdgeOffsets[i] .. nodeEdgeOffsets[i + 1]], in edge order
+    private final int[] nodeEdgeOffsets;
+    private final int[] nodeEdges;
+    private final double[] edgeForceX;
+    private final double[] edgeForceY;
+
+    public ParallelAttraction(int nodeCount, int[] edgeSources, int[] edgeTargets) {
+        if (edgeSources.length != edgeTargets.length) {
+            throw new IllegalArgumentException("Edge arrays with different lengths");
+        }
+        this.nodeCount = nodeCount;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+
+        nodeEdgeOffsets = new int[nodeCount + 1];
+        for (int e = 0; e < edgeSources.length; e++) {
+            nodeEdgeOffsets[edgeSources[e] + 1]++;
+            nodeEdgeOffsets[edgeTargets[e] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            nodeEdgeOffsets[i + 1] += nodeEdgeOffsets[i];
+        }
+        nodeEdges = new int[2 * edgeSources.length];
+        int[] next = Arrays.copyOf(nodeEdgeOffsets, nodeCount);
+        for (int e = 0; e < edgeSources.length; e++) {
+            nodeEdges[next[edgeSources[e]]++] = e;
+            nodeEdges[next[edgeTargets[e]]++] = e;
+        }
+        edgeForceX = new double[edgeSources.length];
+        edgeForceY = new double[edgeSources.length];
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeSources.length;
+    }
+
+    // Self loops are counted twice, as in Graph.getDegree
+    public int degree(int n) {
+        return nodeEdgeOffsets[n + 1] - nodeEdgeOffsets[n];
+    }
+
+    public void apply(ExecutorService pool, int taskCount,
+                      double[] x, double[] y, double[] mass, double[] size, double[] weights,
+                      boolean linLogMode, boolean distributedAttraction, boolean adjustSizes, double coefficient,
+                      double[] dx, double[] dy) {
+        runRanges(pool, taskCount, edgeSources.length, (from, to) -> {
+            for (int e = from; e < to; e++) {
+                int n1 = edgeSources[e];
+                int n2 = edgeTargets[e];
+                double xDist = x[n1] - x[n2];
+                double yDist = y[n1] - y[n2];
+                double factor = factor(xDist, yDist, size[n1], size[n2], weights[e], mass[n1],
+                        linLogMode, distributedAttraction, adjustSizes, coefficient);
+                edgeForceX[e] = xDist * factor;
+                edgeForceY[e] = yDist * factor;
+            }
+        });
+        runRanges(pool, taskCount, nodeCount, (from, to) -> {
+            for (int n = from; n < to; n++) {
+                for (int k = nodeEdgeOffsets[n]; k < nodeEdgeOffsets[n + 1]; k++) {
+                    int e = nodeEdges[k];
+                    // Self loops have a zero force, no matter the sign they are added with
+                    if (edgeSources[e] == n) {
+                        dx[n] += edgeForceX[e];
+                        dy[n] += edgeForceY[e];
+                    } else {
+                        dx[n] -= edgeForceX[e];
+                        dy[n] -= edgeForceY[e];
+                    }
+                }
+            }
+        });
+    }
+
+    // Float buffers of the float engine, edge forces and their sums per node in double, each node force rounded once
+    public void apply(ExecutorService pool, int taskCount,
+                      float[] x, float[] y, float[] mass, float[] size, float[] weights,
+                      boolean linLogMode, boolean distributedAttraction, boolean adjustSizes, double coefficient,
+                      float[] dx, float[] dy) {
+        runRanges(pool, taskCount, edgeSources.length, (from, to) -> {
+            for (int e = from; e < to; e++) {
+                int n1 = edgeSources[e];
+                int n2 = edgeTargets[e];
+                double xDist = (double) x[n1] - x[n2];
+                double yDist = (double) y[n1] - y[n2];
+                double factor = factor(xDist, yDist, size[n1], size[n2], weights[e], mass[n1],
+                        linLogMode, distributedAttraction, adjustSizes, coefficient);
+                edgeForceX[e] = xDist * factor;
+                edgeForceY[e] = yDist * factor;
+            }
+        });
+        runRanges(pool, taskCount, nodeCount, (from, to) -> {
+            for (int n = from; n < to; n++) {
+                double fx = 0;
+                double fy = 0;
+                for (int k = nodeEdgeOffsets[n]; k < nodeEdgeOffsets[n + 1]; k++) {
+                    int e = nodeEdges[k];
+                    if (edgeSources[e] == n) {
+                        fx += edgeForceX[e];
+                        fy += edgeForceY[e];
+                    } else {
+                        fx -= edgeForceX[e];
+                        fy -= edgeForceY[e];
+                    }
+                }
+                dx[n] += (float) fx;
+                dy[n] += (float) fy;
+            }
+        });
+    }
+
+    // Attraction of an edge from its first node n1 to the second one, factor of the vector (xDist, yDist) from n2 to n1
+    private static double factor(double xDist, double yDist, double size1, double size2, double weight, double mass1,
+                                 boolean linLogMode, boolean distributedAttraction, boolean adjustSizes, double coefficient) {
+        double factor = 0;
+        if (linLogMode || adjustSizes) {
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+            if (adjustSizes) {
+                distance = distance - size1 - size2;
+            }
+            if (distance > 0) {
+                factor = linLogMode ? -coefficient * weight * Math.log(1 + distance) / distance : -coefficient * weight;
+            }
+        } else {
+            factor = -coefficient * weight;
+        }
+        if (distributedAttraction) {
+            factor /= mass1;
+        }
+        return factor;
+    }
+
+    interface RangeTask {
+        void run(int from, int to);
+    }
+
+    // Splits [0, count) in taskCount contiguous ranges, runs them on the pool and waits for all of them
+    static void runRanges(ExecutorService pool, int taskCount, int count, RangeTask task) {
+        if (taskCount <= 1 || count < 2 * taskCount) {
+            task.run(0, count);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(taskCount);
+        for (int t = taskCount; t > 0; t--) {
+            int from = (int) ((long) count * (t - 1) / taskCount);
+            int to = (int) ((long) count * t / taskCount);
+            futures.add(pool.submit(() -> task.run(from, to)));
+        }
+        waitAll(futures);
+    }
+
+    // Runs task.run(t, t + 1) for every t in [0, taskCount), each one a task of the pool, and waits for all of them
+    static void runTasks(ExecutorService pool, int taskCount, RangeTask task) {
+        if (taskCount <= 1) {
+            task.run(0, taskCount);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(taskCount);
+        for (int t = taskCount; t > 0; t--) {
+            int index = t - 1;
+            futures.add(pool.submit(() -> task.run(index, index + 1)));
+        }
+        waitAll(futures);
+    }
+
+    private static void waitAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to layout in parallel.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package experiments.network.viz.gephi;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RecursiveAction;
+
+// ForceAtlas2 repulsion and gravity computed in parallel over primitive buffers
+// Each task accumulates only the forces of its own range of nodes.
+// The Barnes-Hut tree is kept between calls and rebuilt in place.
+// With Barnes-Hut, nodes are visited in the z-order of the last tree build, so a range of nodes is a compact
+// region of the layout and its walks of the tree touch the same cells.
+// Ranges are split by the cost of each node in the previous call, the number of cells and nodes it interacted with.
+// On a ForkJoinPool or a layout lease they are halved recursively and idle threads steal the pending halves,
+// on other executors they are taskCount ranges of equal cost.
+// The float overloads, for the float engine, use a FloatQuadTree and sum the force on each node in double
+
+public final class ParallelRepulsion {
+
+    private static final int MIN_BLOCK_SIZE = 16;
+
+    private final QuadTree tree;
+    private FloatQuadTree floatTree;
+    private final RepulsionKernel kernel;
+    private final int leafCapacity;
+    // Interactions of each node in the last call, by node index
+    private int[] cost = new int[0];
+    // Prefix sums of the costs in visiting order
+    private long[] costPrefix = new long[1];
+    // Limits of the ranges of equal cost, on executors that cannot run fork/join tasks
+    private int[] rangeLimits = new int[0];
+
+    public ParallelRepulsion() {
+        this(RepulsionKernel.get(), QuadTree.LEAF_CAPACITY);
+    }
+
+    // Kernel and leaf capacity of the trees, to compare them
+    public ParallelRepulsion(RepulsionKernel kernel, int leafCapacity) {
+        this.kernel = kernel;
+        this.leafCapacity = leafCapacity;
+        this.tree = new QuadTree(kernel, leafCapacity);
+    }
+
+    public QuadTree getTree() {
+        return tree;
+    }
+
+    public void apply(ExecutorService pool, int taskCount, int nodeCount,
+                      double[] x, double[] y, double[] mass, double[] size,
+                      double scalingRatio, boolean adjustSizes, boolean barnesHutOptimize, double barnesHutTheta,
+                      double gravity, boolean strongGravityMode,
+                      double[] dx, double[] dy) {
+        if (barnesHutOptimize) {
+            buildTree(pool, taskCount, nodeCount, x, y, mass, size);
+        }
+        applyForces(pool, taskCount, nodeCount, x, y, mass, size, scalingRatio, adjustSizes, barnesHutOptimize, barnesHutTheta,
+                gravity, strongGravityMode, dx, dy);
+    }
+
+    // Separate from the forces so each can be measured on its own
+    public void buildTree(ExecutorService pool, int taskCount, int nodeCount,
+                          double[] x, double[] y, double[] mass, double[] size) {
+        tree.build(pool, taskCount, nodeCount, x, y, mass, size);
+    }
+
+    // Uses the tree of the last build when barnesHutOptimize
+    public void applyForces(ExecutorService pool, int taskCount, int nodeCount,
+                            double[] x, double[] y, double[] mass, double[] size,
+                            double scalingRatio, boolean adjustSizes, boolean barnesHutOptimize, double barnesHutTheta,
+                            double gravity, boolean strongGravityMode,
+                            double[] dx, double[] dy) {
+        int[] order = barnesHutOptimize && tree.getPointCount() == nodeCount ? tree.order() : null;
+        applyForces(pool, taskCount, nodeCount, order, (n, force) -> {
+            int interactions;
+            if (barnesHutOptimize) {
+                interactions = tree.applyRepulsion(n, x[n], y[n], mass[n], size[n], scalingRatio, adjustSizes, barnesHutTheta, dx, dy);
+            } else {
+                kernel.repulse(n, x[n], y[n], mass[n], size[n], x, y, mass, size, 0, nodeCount, scalingRatio, adjustSizes, dx, dy);
+                interactions = nodeCount - 1;
+            }
+            double factor = gravityFactor(x[n], y[n], mass[n], gravity, strongGravityMode);
+            if (factor != 0) {
+                dx[n] -= x[n] * factor;
+                dy[n] -= y[n] * factor;
+            }
+            return interactions;
+        });
+    }
+
+    public void buildTree(ExecutorService pool, int taskCount, int nodeCount,
+                          float[] x, float[] y, float[] mass, float[] size) {
+        if (floatTree == null) {
+            floatTree = new FloatQuadTree(kernel, leafCapacity);
+        }
+        floatTree.build(pool, taskCount, nodeCount, x, y, mass, size);
+    }
+
+    // The force on each node is summed in double and rounded once
+    public void applyForces(ExecutorService pool, int taskCount, int nodeCount,
+                            float[] x, float[] y, float[] mass, float[] size,
+                            double scalingRatio, boolean adjustSizes, boolean barnesHutOptimize, double barnesHutTheta,
+                            double gravity, boolean strongGravityMode,
+                            float[] dx, float[] dy) {
+        int[] order = barnesHutOptimize && floatTree != null && floatTree.getPointCount() == nodeCount ? floatTree.order() : null;
+        applyForces(pool, taskCount, nodeCount, order, (n, force) -> {
+            force[0] = 0;
+            force[1] = 0;
+            int interactions;
+            if (barnesHutOptimize) {
+                interactions = floatTree.applyRepulsion(x[n], y[n], mass[n], size[n], scalingRatio, adjustSizes, barnesHutTheta, force);
+            } else {
+                kernel.repulse(x[n], y[n], mass[n], size[n], x, y, mass, size, 0, nodeCount, scalingRatio, adjustSizes, force);
+                interactions = nodeCount - 1;
+            }
+            double factor = gravityFactor(x[n], y[n], mass[n], gravity, strongGravityMode);
+            if (factor != 0) {
+                force[0] -= x[n] * factor;
+                force[1] -= y[n] * factor;
+            }
+            dx[n] += (float) force[0];
+            dy[n] += (float) force[1];
+            return interactions;
+        });
+    }
+
+    // Repulsion and gravity on node n, returns its cost
+    // force is a buffer of the task, for the overloads that sum the force of a node before storing it
+    private interface NodeForce {
+        int apply(int n, double[] force);
+    }
+
+    private void applyForces(ExecutorService pool, int taskCount, int nodeCount, int[] order, NodeForce nodeForce) {
+        if (cost.length < nodeCount) {
+            cost = new int[nodeCount];
+        }
+        run(pool, taskCount, nodeCount, order, (from, to) -> {
+            double[] force = new double[2];
+            for (int k = from; k < to; k++) {
+                int n = order != null ? order[k] : k;
+                cost[n] = nodeForce.apply(n, force);
+            }
+        });
+    }
+
+    // Zero at the origin, where gravity has no direction
+    private static double gravityFactor(double x, double y, double mass, double gravity, boolean strongGravityMode) {
+        double distance = Math.sqrt(x * x + y * y);
+        if (distance > 0) {
+            return strongGravityMode ? mass * gravity : mass * gravity / distance;
+        }
+        return 0;
+    }
+
+    private void run(ExecutorService pool, int taskCount, int nodeCount, int[] order, ParallelAttraction.RangeTask task) {
+        if (taskCount <= 1 || nodeCount < 2 * MIN_BLOCK_SIZE) {
+            ParallelAttraction.runRanges(pool, taskCount, nodeCount, task);
+            return;
+        }
+        long totalCost = prefixCosts(nodeCount, order);
+        if (!LayoutScheduler.invoke(pool, new Block(task, costPrefix, 0, nodeCount, Math.max(1, totalCost / taskCount)))) {
+            int[] limits = costRanges(taskCount, nodeCount, totalCost);
+            ParallelAttraction.runTasks(pool, taskCount, (first, last) -> {
+                if (limits[first] < limits[last]) {
+                    task.run(limits[first], limits[last]);
+                }
+            });
+        }
+    }
+
+    // Limits of taskCount ranges of about the same cost, range t is [limits[t], limits[t + 1])
+    private int[] costRanges(int taskCount, int nodeCount, long totalCost) {
+        if (rangeLimits.length < taskCount + 1) {
+            rangeLimits = new int[taskCount + 1];
+        }
+        int k = 0;
+        for (int t = 0; t < taskCount; t++) {
+            long target = totalCost * t / taskCount;
+            while (costPrefix[k] < target) {
+                k++;
+            }
+            rangeLimits[t] = k;
+        }
+        rangeLimits[taskCount] = nodeCount;
+        return rangeLimits;
+    }
+
+    // Nodes without a cost yet, as in the first call, count as one interaction
+    private long prefixCosts(int nodeCount, int[] order) {
+        if (costPrefix.length < nodeCount + 1) {
+            costPrefix = new long[nodeCount + 1];
+        }
+        for (int k = 0; k < nodeCount; k++) {
+            int n = order != null ? order[k] : k;
+            costPrefix[k + 1] = costPrefix[k] + Math.max(1, cost[n]);
+        }
+        return costPrefix[nodeCount];
+    }
+
+    // Range of nodes in visiting order, halved by cost until it is below the grain
+    private static final class Block extends RecursiveAction {
+        private final ParallelAttraction.RangeTask task;
+        private final long[] costPrefix;
+        private final int from;
+        private final int to;
+        private final long grain;
+
+        Block(ParallelAttraction.RangeTask task, long[] costPrefix, int from, int to, long grain) {
+            this.task = task;
+            this.costPrefix = costPrefix;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_BLOCK_SIZE || costPrefix[to] - costPrefix[from] <= grain) {
+                task.run(from, to);
+                return;
+            }
+            int mid = costMidpoint();
+            invokeAll(new Block(task, costPrefix, from, mid, grain), new Block(task, costPrefix, mid, to, grain));
+        }
+
+        // First index where the cost reaches half of the range, keeping both halves non empty
+        private int costMidpoint() {
+            long half = (costPrefix[from] + costPrefix[to]) / 2;
+            int lo = from + 1;
+            int hi = to - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (costPrefix[mid] < half) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
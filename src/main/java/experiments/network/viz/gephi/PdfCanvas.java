@@ -0,0 +1,84 @@
+package experiments.network.viz.gephi;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// PDF written directly with iText content operators, without the Gephi preview model
+// Page size is the size of the drawing, PDF y axis points up so coordinates are flipped
+
+class PdfCanvas implements Canvas {
+
+    private final OutputStream output;
+    private Document document;
+    private PdfContentByte content;
+    private BaseFont font;
+    private double height;
+
+    PdfCanvas(OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void begin(double width, double height) throws IOException {
+        this.height = height;
+        try {
+            document = new Document(new Rectangle((float) width, (float) height), 0, 0, 0, 0);
+            PdfWriter writer = PdfWriter.getInstance(document, output);
+            document.open();
+            content = writer.getDirectContent();
+            font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+        } catch (DocumentException e) {
+            throw new IOException(e);
+        }
+        content.setLineCap(PdfContentByte.LINE_CAP_ROUND);
+    }
+
+    @Override
+    public void edge(double x1, double y1, double x2, double y2, Color color, double width) {
+        content.setColorStroke(new BaseColor(color.getRGB()));
+        content.setLineWidth((float) width);
+        content.moveTo((float) x1, (float) (height - y1));
+        content.lineTo((float) x2, (float) (height - y2));
+        content.stroke();
+    }
+
+    @Override
+    public void node(double x, double y, double radius, Color fill, Color border, double borderWidth) {
+        content.setColorFill(new BaseColor(fill.getRGB()));
+        content.setColorStroke(new BaseColor(border.getRGB()));
+        content.setLineWidth((float) borderWidth);
+        content.circle((float) x, (float) (height - y), (float) radius);
+        content.fillStroke();
+    }
+
+    @Override
+    public void label(double x, double y, String text, double fontSize, Color color) {
+        content.beginText();
+        content.setColorFill(new BaseColor(color.getRGB()));
+        content.setFontAndSize(font, (float) fontSize);
+        // Vertically centered approximately, as in the SVG output
+        content.showTextAligned(Element.ALIGN_CENTER, text, (float) x, (float) (height - y - fontSize / 3), 0);
+        content.endText();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (document != null) {
+                document.close();
+            }
+        } finally {
+            output.close();
+        }
+    }
+}
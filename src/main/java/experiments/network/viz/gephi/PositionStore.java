@@ -0,0 +1,98 @@
+package experiments.network.viz.gephi;
+
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.Node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Node positions saved by node id in a memory mapped file, to start the layout of the next run from them
+// Format: magic, number of nodes, then for each node the length and UTF-8 bytes of its id, x and y
+
+public class PositionStore {
+
+    private static final int MAGIC = 0x4e504f53;
+
+    private final Path path;
+
+    public PositionStore(Path path) {
+        this.path = path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    // Moves the nodes of the graph found in the store to their saved position, returns the number of nodes moved
+    // Nodes are looked up while reading the file, no map of the saved positions is built
+    public int restore(Graph graph) {
+        if (!exists()) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a position store " + path);
+            }
+            int count = buffer.getInt();
+            int restored = 0;
+            byte[] bytes = new byte[256];
+            for (int k = 0; k < count; k++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, 2 * bytes.length)];
+                }
+                buffer.get(bytes, 0, length);
+                float x = buffer.getFloat();
+                float y = buffer.getFloat();
+                Node node = graph.getNode(new String(bytes, 0, length, StandardCharsets.UTF_8));
+                if (node != null) {
+                    node.setX(x);
+                    node.setY(y);
+                    restored++;
+                }
+            }
+            return restored;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Written to a temporary file and moved, a run reading the store never sees a partial one
+    public void save(Graph graph) {
+        Node[] nodes = graph.getNodes().toArray();
+        byte[][] ids = new byte[nodes.length][];
+        long size = 8;
+        for (int k = 0; k < nodes.length; k++) {
+            ids[k] = nodes[k].getId().toString().getBytes(StandardCharsets.UTF_8);
+            size += 4 + ids[k].length + 8;
+        }
+        try {
+            Path folder = path.toAbsolutePath().getParent();
+            Files.createDirectories(folder);
+            Path tmp = Files.createTempFile(folder, "positions", ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC);
+                buffer.putInt(nodes.length);
+                for (int k = 0; k < nodes.length; k++) {
+                    buffer.putInt(ids[k].length);
+                    buffer.put(ids[k]);
+                    buffer.putFloat(nodes[k].x());
+                    buffer.putFloat(nodes[k].y());
+                }
+                buffer.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package experiments.network.viz.gephi;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+// Barnes-Hut quadtree of the double engines, points and cell summaries stored as doubles
+
+public final class QuadTree extends AbstractQuadTree {
+
+    private double[] sortedX = new double[0];
+    private double[] sortedY = new double[0];
+    private double[] sortedMass = new double[0];
+    private double[] sortedSize = new double[0];
+
+    private double[] cellMass = new double[0];
+    private double[] cellMassCenterX = new double[0];
+    private double[] cellMassCenterY = new double[0];
+    private double[] cellMinX = new double[0];
+    private double[] cellMinY = new double[0];
+    private double[] cellMaxX = new double[0];
+    private double[] cellMaxY = new double[0];
+    private double[] cellSize = new double[0];
+
+    public QuadTree() {
+        this(RepulsionKernel.get(), LEAF_CAPACITY);
+    }
+
+    public QuadTree(RepulsionKernel kernel, int leafCapacity) {
+        super(kernel, leafCapacity);
+    }
+
+    public void build(ExecutorService pool, int taskCount, int n, double[] x, double[] y, double[] mass, double[] size) {
+        build(pool, taskCount, n, i -> x[i], i -> y[i], (from, to) -> {
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                sortedX[k] = x[i];
+                sortedY[k] = y[i];
+                sortedMass[k] = mass[i];
+                sortedSize[k] = size[i];
+            }
+        });
+    }
+
+    @Override
+    protected void summarizeLeaf(int c) {
+        double m = 0;
+        double mx = 0;
+        double my = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int k = cellStart[c]; k < cellEnd[c]; k++) {
+            m += sortedMass[k];
+            mx += sortedX[k] * sortedMass[k];
+            my += sortedY[k] * sortedMass[k];
+            minX = Math.min(minX, sortedX[k]);
+            minY = Math.min(minY, sortedY[k]);
+            maxX = Math.max(maxX, sortedX[k]);
+            maxY = Math.max(maxY, sortedY[k]);
+        }
+        setSummary(c, m, mx, my, minX, minY, maxX, maxY);
+    }
+
+    @Override
+    protected void summarizeInnerCell(int c) {
+        double m = 0;
+        double mx = 0;
+        double my = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int child = cellFirstChild[c]; child < cellFirstChild[c] + cellChildCount[c]; child++) {
+            m += cellMass[child];
+            mx += cellMassCenterX[child] * cellMass[child];
+            my += cellMassCenterY[child] * cellMass[child];
+            minX = Math.min(minX, cellMinX[child]);
+            minY = Math.min(minY, cellMinY[child]);
+            maxX = Math.max(maxX, cellMaxX[child]);
+            maxY = Math.max(maxY, cellMaxY[child]);
+        }
+        setSummary(c, m, mx, my, minX, minY, maxX, maxY);
+    }
+
+    private void setSummary(int c, double m, double mx, double my, double minX, double minY, double maxX, double maxY) {
+        double cx = mx / m;
+        double cy = my / m;
+        cellMass[c] = m;
+        cellMassCenterX[c] = cx;
+        cellMassCenterY[c] = cy;
+        cellMinX[c] = minX;
+        cellMinY[c] = minY;
+        cellMaxX[c] = maxX;
+        cellMaxY[c] = maxY;
+        cellSize[c] = cellSize(cx, cy, minX, minY, maxX, maxY);
+    }
+
+    // Repulsion on point i from all the other points, only the force on i is accumulated
+    // Returns the number of cells and points it interacted with, a measure of its cost
+    public int applyRepulsion(int i, double xi, double yi, double massi, double sizei,
+                              double coefficient, boolean adjustSizes, double theta,
+                              double[] dx, double[] dy) {
+        if (cellCount > 0) {
+            return applyRepulsion(0, i, xi, yi, massi, sizei, coefficient, adjustSizes, theta, dx, dy);
+        }
+        return 0;
+    }
+
+    private int applyRepulsion(int c, int i, double xi, double yi, double massi, double sizei,
+                               double coefficient, boolean adjustSizes, double theta,
+                               double[] dx, double[] dy) {
+        double xDist = xi - cellMassCenterX[c];
+        double yDist = yi - cellMassCenterY[c];
+        double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+        if (!isExactLeaf(c, adjustSizes) && distance * theta > cellSize[c]) {
+            double factor = coefficient * massi * cellMass[c] / distance / distance;
+            dx[i] += xDist * factor;
+            dy[i] += yDist * factor;
+            return 1;
+        } else if (cellChildCount[c] == 0) {
+            // Leaf points are contiguous in the sorted arrays, point i may be one of them, with a zero force
+            kernel.repulse(i, xi, yi, massi, sizei, sortedX, sortedY, sortedMass, sortedSize, cellStart[c], cellEnd[c],
+                    coefficient, adjustSizes, dx, dy);
+            return 1 + cellEnd[c] - cellStart[c];
+        } else {
+            int interactions = 1;
+            for (int child = cellFirstChild[c]; child < cellFirstChild[c] + cellChildCount[c]; child++) {
+                interactions += applyRepulsion(child, i, xi, yi, massi, sizei, coefficient, adjustSizes, theta, dx, dy);
+            }
+            return interactions;
+        }
+    }
+
+    @Override
+    protected void growPoints(int capacity) {
+        sortedX = new double[capacity];
+        sortedY = new double[capacity];
+        sortedMass = new double[capacity];
+        sortedSize = new double[capacity];
+    }
+
+    @Override
+    protected void growCellSummaries(int capacity) {
+        cellMass = Arrays.copyOf(cellMass, capacity);
+        cellMassCenterX = Arrays.copyOf(cellMassCenterX, capacity);
+        cellMassCenterY = Arrays.copyOf(cellMassCenterY, capacity);
+        cellMinX = Arrays.copyOf(cellMinX, capacity);
+        cellMinY = Arrays.copyOf(cellMinY, capacity);
+        cellMaxX = Arrays.copyOf(cellMaxX, capacity);
+        cellMaxY = Arrays.copyOf(cellMaxY, capacity);
+        cellSize = Arrays.copyOf(cellSize, capacity);
+    }
+}
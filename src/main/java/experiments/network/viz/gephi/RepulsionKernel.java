@@ -0,0 +1,64 @@
+package experiments.network.viz.gephi;
+
+// Repulsion of one node from a batch of nodes stored in primitive arrays,
+// the node to node force of AbstractQuadTree.repulsionFactor, used for the leaves of the Barnes-Hut trees and for exact repulsion.
+// The float overload reads the float buffers of the float engine and computes the force in double.
+// The SIMD kernel needs the incubating Vector API, it is built with the simd profile and the JVM must be started with --add-modules jdk.incubator.vector,
+// otherwise, or with -Dviz.simd=false, the scalar kernel is used.
+// The SIMD kernel adds the forces in a different order, results are equal up to rounding
+
+public abstract class RepulsionKernel {
+
+    private static final boolean SIMD = Boolean.parseBoolean(System.getProperty("viz.simd", "true"));
+    private static final String VECTOR_KERNEL_CLASS = "experiments.network.viz.gephi.VectorRepulsionKernel";
+    private static final RepulsionKernel SCALAR = new ScalarRepulsionKernel();
+    private static final RepulsionKernel DEFAULT = createDefault();
+
+    // SIMD if available
+    public static RepulsionKernel get() {
+        return DEFAULT;
+    }
+
+    public static RepulsionKernel scalar() {
+        return SCALAR;
+    }
+
+    // Throws if the Vector API is not available
+    public static RepulsionKernel vector() {
+        RepulsionKernel kernel = createVector();
+        if (kernel == null) {
+            throw new UnsupportedOperationException("Vector API not available, add --add-modules jdk.incubator.vector to the JVM options");
+        }
+        return kernel;
+    }
+
+    private static RepulsionKernel createDefault() {
+        RepulsionKernel kernel = SIMD ? createVector() : null;
+        return kernel != null ? kernel : SCALAR;
+    }
+
+    // Loaded by name, so nothing here links against the Vector API when its module is not there
+    private static RepulsionKernel createVector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (RepulsionKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public abstract boolean isVectorized();
+
+    // Adds to dx[i], dy[i] the repulsion on i from the nodes [from, to) of the arrays, i itself can be in the range,
+    // its force is zero
+    public abstract void repulse(int i, double xi, double yi, double massi, double sizei,
+                                 double[] x, double[] y, double[] mass, double[] size, int from, int to,
+                                 double coefficient, boolean adjustSizes, double[] dx, double[] dy);
+
+    // Adds to force[0], force[1] the repulsion on a node at (xi, yi) from the nodes [from, to) of the arrays
+    public abstract void repulse(double xi, double yi, double massi, double sizei,
+                                 float[] x, float[] y, float[] mass, float[] size, int from, int to,
+                                 double coefficient, boolean adjustSizes, double[] force);
+}
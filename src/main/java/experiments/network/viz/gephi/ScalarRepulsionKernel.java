@@ -0,0 +1,40 @@
+package experiments.network.viz.gephi;
+
+final class ScalarRepulsionKernel extends RepulsionKernel {
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public void repulse(int i, double xi, double yi, double massi, double sizei,
+                        double[] x, double[] y, double[] mass, double[] size, int from, int to,
+                        double coefficient, boolean adjustSizes, double[] dx, double[] dy) {
+        for (int k = from; k < to; k++) {
+            double xDist = xi - x[k];
+            double yDist = yi - y[k];
+            double factor = AbstractQuadTree.repulsionFactor(xDist, yDist, massi, sizei, mass[k], size[k], coefficient, adjustSizes);
+            dx[i] += xDist * factor;
+            dy[i] += yDist * factor;
+        }
+    }
+
+    @Override
+    public void repulse(double xi, double yi, double massi, double sizei,
+                        float[] x, float[] y, float[] mass, float[] size, int from, int to,
+                        double coefficient, boolean adjustSizes, double[] force) {
+        for (int k = from; k < to; k++) {
+            double xDist = xi - x[k];
+            double yDist = yi - y[k];
+            double factor = AbstractQuadTree.repulsionFactor(xDist, yDist, massi, sizei, mass[k], size[k], coefficient, adjustSizes);
+            force[0] += xDist * factor;
+            force[1] += yDist * factor;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,135 @@
+package experiments.network.viz.gephi;
+
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.Node;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+// Exports the graph drawing straight from node positions, sizes and colors
+// One pass to get the bounding box and one pass per kind of primitive (edges, nodes, labels),
+// writing each primitive as it is visited, so time and memory grow linearly with the graph.
+// Output format from the file extension: .svg, .svgz or .svg.gz (gzip compressed), .pdf
+// Labels are not written when they would be smaller than a minimum font size on the page
+
+public class StreamingExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Color LABEL_COLOR = Color.LIGHT_GRAY;
+
+    private double pageWidth = 1600;
+    private double margin = 20;
+    private double edgeThickness = 0.5;
+    private double nodeBorderWidth = 0.2;
+    // Label font size relative to node size, in graph units
+    private double labelSizeRatio = 2.0;
+    private double minLabelFontSize = 2.0;
+    private boolean showLabels = true;
+
+    public void export(Graph graph, Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        OutputStream output = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+        Canvas canvas;
+        if (name.endsWith(".pdf")) {
+            canvas = new PdfCanvas(output);
+        } else if (name.endsWith(".svgz") || name.endsWith(".svg.gz")) {
+            canvas = new SvgCanvas(new GZIPOutputStream(output, BUFFER_SIZE));
+        } else if (name.endsWith(".svg")) {
+            canvas = new SvgCanvas(output);
+        } else {
+            output.close();
+            throw new IllegalArgumentException("Unknown export format for " + path);
+        }
+        graph.readLock();
+        try (canvas) {
+            draw(graph, canvas);
+        } finally {
+            graph.readUnlockAll();
+        }
+    }
+
+    private void draw(Graph graph, Canvas canvas) throws IOException {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Node n : graph.getNodes()) {
+            minX = Math.min(minX, n.x() - n.size());
+            minY = Math.min(minY, n.y() - n.size());
+            maxX = Math.max(maxX, n.x() + n.size());
+            maxY = Math.max(maxY, n.y() + n.size());
+        }
+        if (minX > maxX) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+        double extent = Math.max(Math.max(maxX - minX, maxY - minY), 1e-9);
+        double scale = (pageWidth - 2 * margin) / extent;
+        double pageHeight = (maxY - minY) * scale + 2 * margin;
+        // Graph y axis points up, page y axis points down
+        double offsetX = margin - minX * scale;
+        double offsetY = margin + maxY * scale;
+
+        canvas.begin(pageWidth, pageHeight);
+        for (Edge e : graph.getEdges()) {
+            Node source = e.getSource();
+            Node target = e.getTarget();
+            // Edges without a color of their own take the color of their source node, as in the preview
+            Color color = e.alpha() > 0 ? e.getColor() : source.getColor();
+            canvas.edge(offsetX + source.x() * scale, offsetY - source.y() * scale,
+                    offsetX + target.x() * scale, offsetY - target.y() * scale,
+                    color, edgeThickness * scale);
+        }
+        for (Node n : graph.getNodes()) {
+            Color fill = n.getColor();
+            canvas.node(offsetX + n.x() * scale, offsetY - n.y() * scale, n.size() * scale,
+                    fill, fill.darker(), nodeBorderWidth * scale);
+        }
+        if (showLabels) {
+            for (Node n : graph.getNodes()) {
+                String label = n.getLabel();
+                double fontSize = labelSizeRatio * n.size() * scale;
+                if (label == null || label.isEmpty() || fontSize < minLabelFontSize) {
+                    continue;
+                }
+                canvas.label(offsetX + n.x() * scale, offsetY - n.y() * scale, label, fontSize, LABEL_COLOR);
+            }
+        }
+    }
+
+    // Width of the drawing in page units (pixels for SVG, points for PDF), height follows the aspect ratio of the graph
+    public void setPageWidth(double pageWidth) {
+        this.pageWidth = pageWidth;
+    }
+
+    public void setMargin(double margin) {
+        this.margin = margin;
+    }
+
+    public void setEdgeThickness(double edgeThickness) {
+        this.edgeThickness = edgeThickness;
+    }
+
+    public void setNodeBorderWidth(double nodeBorderWidth) {
+        this.nodeBorderWidth = nodeBorderWidth;
+    }
+
+    public void setLabelSizeRatio(double labelSizeRatio) {
+        this.labelSizeRatio = labelSizeRatio;
+    }
+
+    // Zoom threshold for labels, in page units
+    public void setMinLabelFontSize(double minLabelFontSize) {
+        this.minLabelFontSize = minLabelFontSize;
+    }
+
+    public void setShowLabels(boolean showLabels) {
+        this.showLabels = showLabels;
+    }
+}
@@ -0,0 +1,155 @@
+package experiments.network.viz.gephi;
+
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+// SVG written element by element to a buffered stream, nothing is kept in memory
+// Edges, nodes and labels come in this order, each kind in its own group
+
+class SvgCanvas implements Canvas {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final BufferedWriter writer;
+    private String group;
+
+    SvgCanvas(OutputStream output) {
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void begin(double width, double height) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        number(width);
+        writer.write("\" height=\"");
+        number(height);
+        writer.write("\" viewBox=\"0 0 ");
+        number(width);
+        writer.write(' ');
+        number(height);
+        writer.write("\">\n");
+    }
+
+    @Override
+    public void edge(double x1, double y1, double x2, double y2, Color color, double width) throws IOException {
+        group("edges", "stroke-linecap=\"round\"");
+        writer.write("<line x1=\"");
+        number(x1);
+        writer.write("\" y1=\"");
+        number(y1);
+        writer.write("\" x2=\"");
+        number(x2);
+        writer.write("\" y2=\"");
+        number(y2);
+        writer.write("\" stroke=\"");
+        color(color);
+        writer.write("\" stroke-width=\"");
+        number(width);
+        writer.write("\"/>\n");
+    }
+
+    @Override
+    public void node(double x, double y, double radius, Color fill, Color border, double borderWidth) throws IOException {
+        group("nodes", null);
+        writer.write("<circle cx=\"");
+        number(x);
+        writer.write("\" cy=\"");
+        number(y);
+        writer.write("\" r=\"");
+        number(radius);
+        writer.write("\" fill=\"");
+        color(fill);
+        writer.write("\" stroke=\"");
+        color(border);
+        writer.write("\" stroke-width=\"");
+        number(borderWidth);
+        writer.write("\"/>\n");
+    }
+
+    @Override
+    public void label(double x, double y, String text, double fontSize, Color color) throws IOException {
+        group("labels", "font-family=\"sans-serif\" text-anchor=\"middle\" dominant-baseline=\"central\"");
+        writer.write("<text x=\"");
+        number(x);
+        writer.write("\" y=\"");
+        number(y);
+        writer.write("\" font-size=\"");
+        number(fontSize);
+        writer.write("\" fill=\"");
+        color(color);
+        writer.write("\">");
+        escaped(text);
+        writer.write("</text>\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            group(null, null);
+            writer.write("</svg>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void group(String id, String attributes) throws IOException {
+        if (id != null && id.equals(group)) {
+            return;
+        }
+        if (group != null) {
+            writer.write("</g>\n");
+        }
+        group = id;
+        if (id != null) {
+            writer.write("<g id=\"" + id + "\"" + (attributes != null ? " " + attributes : "") + ">\n");
+        }
+    }
+
+    // Two decimals are enough for page coordinates, written without String.format
+    private void number(double value) throws IOException {
+        long v = Math.round(value * 100);
+        if (v < 0) {
+            writer.write('-');
+            v = -v;
+        }
+        writer.write(Long.toString(v / 100));
+        long decimals = v % 100;
+        if (decimals != 0) {
+            writer.write('.');
+            writer.write((char) ('0' + decimals / 10));
+            if (decimals % 10 != 0) {
+                writer.write((char) ('0' + decimals % 10));
+            }
+        }
+    }
+
+    private void color(Color color) throws IOException {
+        writer.write('#');
+        hex(color.getRed());
+        hex(color.getGreen());
+        hex(color.getBlue());
+    }
+
+    private void hex(int component) throws IOException {
+        writer.write(Character.forDigit(component >> 4, 16));
+        writer.write(Character.forDigit(component & 0xf, 16));
+    }
+
+    private void escaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> writer.write("&lt;");
+                case '>' -> writer.write("&gt;");
+                case '&' -> writer.write("&amp;");
+                case '"' -> writer.write("&quot;");
+                default -> writer.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package experiments.network.viz.gephi;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only created by RepulsionKernel when the jdk.incubator.vector module is present
+// Lanes of the preferred species, 4 doubles with AVX2, 8 with AVX-512, the remainder of a batch goes through the scalar force.
+// Floats are loaded with as many lanes, in half the bits, and widened to doubles
+
+final class VectorRepulsionKernel extends RepulsionKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = VectorSpecies.of(float.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+    private static final RepulsionKernel SCALAR = new ScalarRepulsionKernel();
+
+    VectorRepulsionKernel() {
+        // A single lane would only add overhead
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No SIMD registers for doubles");
+        }
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public void repulse(int i, double xi, double yi, double massi, double sizei,
+                        double[] x, double[] y, double[] mass, double[] size, int from, int to,
+                        double coefficient, boolean adjustSizes, double[] dx, double[] dy) {
+        int upper = from + SPECIES.loopBound(to - from);
+        if (upper > from) {
+            DoubleVector vxi = DoubleVector.broadcast(SPECIES, xi);
+            DoubleVector vyi = DoubleVector.broadcast(SPECIES, yi);
+            DoubleVector fx = DoubleVector.zero(SPECIES);
+            DoubleVector fy = fx;
+            double c = coefficient * massi;
+            for (int k = from; k < upper; k += SPECIES.length()) {
+                DoubleVector xDist = vxi.sub(DoubleVector.fromArray(SPECIES, x, k));
+                DoubleVector yDist = vyi.sub(DoubleVector.fromArray(SPECIES, y, k));
+                DoubleVector sizes = adjustSizes ? DoubleVector.fromArray(SPECIES, size, k) : null;
+                DoubleVector factor = factor(xDist, yDist, DoubleVector.fromArray(SPECIES, mass, k).mul(c), sizei, sizes);
+                fx = xDist.fma(factor, fx);
+                fy = yDist.fma(factor, fy);
+            }
+            dx[i] += fx.reduceLanes(VectorOperators.ADD);
+            dy[i] += fy.reduceLanes(VectorOperators.ADD);
+        }
+        SCALAR.repulse(i, xi, yi, massi, sizei, x, y, mass, size, upper, to, coefficient, adjustSizes, dx, dy);
+    }
+
+    @Override
+    public void repulse(double xi, double yi, double massi, double sizei,
+                        float[] x, float[] y, float[] mass, float[] size, int from, int to,
+                        double coefficient, boolean adjustSizes, double[] force) {
+        int upper = from + FLOAT_SPECIES.loopBound(to - from);
+        if (upper > from) {
+            DoubleVector vxi = DoubleVector.broadcast(SPECIES, xi);
+            DoubleVector vyi = DoubleVector.broadcast(SPECIES, yi);
+            DoubleVector fx = DoubleVector.zero(SPECIES);
+            DoubleVector fy = fx;
+            double c = coefficient * massi;
+            for (int k = from; k < upper; k += FLOAT_SPECIES.length()) {
+                DoubleVector xDist = vxi.sub(widen(x, k));
+                DoubleVector yDist = vyi.sub(widen(y, k));
+                DoubleVector sizes = adjustSizes ? widen(size, k) : null;
+                DoubleVector factor = factor(xDist, yDist, widen(mass, k).mul(c), sizei, sizes);
+                fx = xDist.fma(factor, fx);
+                fy = yDist.fma(factor, fy);
+            }
+            force[0] += fx.reduceLanes(VectorOperators.ADD);
+            force[1] += fy.reduceLanes(VectorOperators.ADD);
+        }
+        SCALAR.repulse(xi, yi, massi, sizei, x, y, mass, size, upper, to, coefficient, adjustSizes, force);
+    }
+
+    // Factors of AbstractQuadTree.repulsionFactor on the lanes, cm is the coefficient times both masses,
+    // sizes null when not adjusting them
+    private static DoubleVector factor(DoubleVector xDist, DoubleVector yDist, DoubleVector cm, double sizei, DoubleVector sizes) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector distance = xDist.mul(xDist).add(yDist.mul(yDist)).lanewise(VectorOperators.SQRT);
+        if (sizes != null) {
+            distance = distance.sub(sizes).sub(sizei);
+            VectorMask<Double> apart = distance.compare(VectorOperators.GT, 0);
+            VectorMask<Double> overlap = distance.compare(VectorOperators.LT, 0);
+            return zero.blend(cm.mul(100), overlap).blend(cm.div(distance).div(distance), apart);
+        }
+        VectorMask<Double> apart = distance.compare(VectorOperators.GT, 0);
+        return zero.blend(cm.div(distance).div(distance), apart);
+    }
+
+    private static DoubleVector widen(float[] values, int k) {
+        return (DoubleVector) FloatVector.fromArray(FLOAT_SPECIES, values, k).convertShape(VectorOperators.F2D, SPECIES, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "SIMD, " + SPECIES.length() + " doubles per vector";
+    }
+}
@@ -0,0 +1,46 @@
+package experiments.network.viz;
+
+import experiments.network.viz.GraphData.EdgeData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GraphExtractorTest {
+
+    // Weight is the admittance
+    private static final DoubleUnaryOperator ADMITTANCE = x -> 1 / x;
+
+    private static EdgeData edge(String id, double x) {
+        return new EdgeData(id, id, "A", "B", ADMITTANCE.applyAsDouble(x), x, 400, false);
+    }
+
+    @Test
+    void parallelAdmittancesAreAdded() {
+        List<EdgeData> merged = GraphExtractor.mergeParallelEdges(List.of(edge("l1", 10), edge("l2", 10)), false, ADMITTANCE);
+        assertEquals(1, merged.size());
+        assertEquals(5, merged.get(0).impedance, 1e-12);
+        assertEquals(List.of("l1", "l2"), merged.get(0).memberIds);
+    }
+
+    @Test
+    void negativeReactancesDoNotCancel() {
+        List<EdgeData> merged = GraphExtractor.mergeParallelEdges(List.of(edge("l1", 10), edge("l2", -10)), false, ADMITTANCE);
+        assertEquals(1, merged.size());
+        assertEquals(5, merged.get(0).impedance, 1e-12);
+        assertEquals(0.2, merged.get(0).weight, 1e-12);
+    }
+
+    @Test
+    void zeroAndUndefinedImpedancesAreNotMerged() {
+        List<EdgeData> merged = GraphExtractor.mergeParallelEdges(
+                List.of(edge("l1", 10), edge("coupler", 0), edge("l2", 10), edge("dc", Double.NaN)), false, ADMITTANCE);
+        assertEquals(3, merged.size());
+        assertEquals(List.of("coupler"), merged.get(0).memberIds);
+        assertEquals(List.of("dc"), merged.get(1).memberIds);
+        assertEquals(List.of("l1", "l2"), merged.get(2).memberIds);
+        assertEquals(5, merged.get(2).impedance, 1e-12);
+    }
+}
@@ -0,0 +1,33 @@
+package experiments.network.viz;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VizBatchTest {
+
+    @Test
+    void fieldsAreTrimmed() {
+        assertEquals(List.of("small", "synthetic:500:7", "ATLAS2", "true"), VizBatch.splitFields(" small, synthetic:500:7 ,ATLAS2,true "));
+    }
+
+    @Test
+    void quotedFieldsKeepTheirCommas() {
+        assertEquals(List.of("a,b", "data/x,y.xiidm", "YIFANHU", "false", "VL \"1\", north", "2"),
+                VizBatch.splitFields("\"a,b\", \"data/x,y.xiidm\" ,YIFANHU,false,\"VL \"\"1\"\", north\",2"));
+    }
+
+    @Test
+    void emptyFieldsAreKept() {
+        assertEquals(List.of("a", "", "b", ""), VizBatch.splitFields("a,,b,"));
+    }
+
+    @Test
+    void malformedQuotesAreRejected() {
+        assertNull(VizBatch.splitFields("\"a,b, c"));
+        assertNull(VizBatch.splitFields("\"a\"b, c"));
+    }
+}
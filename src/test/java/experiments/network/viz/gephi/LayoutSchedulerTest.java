@@ -0,0 +1,127 @@
+package experiments.network.viz.gephi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayoutSchedulerTest {
+
+    @Test
+    void leaseRunsAtMostItsShare() throws Exception {
+        try (LayoutScheduler.Lease lease = LayoutScheduler.acquire(2)) {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            AtomicInteger done = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 64; t++) {
+                futures.add(lease.pool().submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    done.incrementAndGet();
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(64, done.get());
+            assertTrue(maxRunning.get() <= lease.threads(), maxRunning.get() + " tasks at the same time for a share of " + lease.threads());
+        }
+    }
+
+    @Test
+    void repulsionOnLeaseIsTheSequentialRepulsion() {
+        int n = 1000;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mass = new double[n];
+        double[] size = new double[n];
+        Random random = new Random(3);
+        for (int i = 0; i < n; i++) {
+            x[i] = random.nextDouble() * 1000;
+            y[i] = random.nextDouble() * 1000;
+            mass[i] = 1 + random.nextInt(5);
+            size[i] = 1 + random.nextDouble() * 10;
+        }
+        double[] expectedDx = new double[n];
+        double[] expectedDy = new double[n];
+        new ParallelRepulsion().applyForces(null, 1, n, x, y, mass, size, 2.0, false, false, 1.2, 1.0, false, expectedDx, expectedDy);
+
+        try (LayoutScheduler.Lease lease = LayoutScheduler.acquire(4)) {
+            ExecutorService pool = lease.pool();
+            ParallelRepulsion repulsion = new ParallelRepulsion();
+            // The second call splits the nodes by the costs of the first one
+            for (int call = 0; call < 2; call++) {
+                double[] dx = new double[n];
+                double[] dy = new double[n];
+                repulsion.applyForces(pool, 16, n, x, y, mass, size, 2.0, false, false, 1.2, 1.0, false, dx, dy);
+                assertArrayEquals(expectedDx, dx);
+                assertArrayEquals(expectedDy, dy);
+            }
+            // The cost balanced blocks ran on the fork/join pool of the lease
+            ForkJoinPool forkJoinPool = lease.forkJoinPool();
+            assertNotNull(forkJoinPool);
+            assertEquals(lease.threads(), forkJoinPool.getParallelism());
+        }
+    }
+
+    @Test
+    void forkJoinTasksRunWithinTheShare() {
+        try (LayoutScheduler.Lease lease = LayoutScheduler.acquire(2)) {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            AtomicInteger leaves = new AtomicInteger();
+            lease.invoke(new Split(0, 256, running, maxRunning, leaves));
+            assertEquals(256, leaves.get());
+            assertTrue(maxRunning.get() <= lease.threads(), maxRunning.get() + " leaves at the same time for a share of " + lease.threads());
+        }
+    }
+
+    private static final class Split extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+        private final AtomicInteger leaves;
+
+        Split(int from, int to, AtomicInteger running, AtomicInteger maxRunning, AtomicInteger leaves) {
+            this.from = from;
+            this.to = to;
+            this.running = running;
+            this.maxRunning = maxRunning;
+            this.leaves = leaves;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                long end = System.nanoTime() + 100_000;
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                running.decrementAndGet();
+                leaves.incrementAndGet();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Split(from, mid, running, maxRunning, leaves), new Split(mid, to, running, maxRunning, leaves));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package experiments.network.viz.gephi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuadTreeTest {
+
+    private static final int NODES = 2000;
+    private static final double SCALING_RATIO = 2.0;
+    // Small enough for every cell with more than one point to be opened
+    private static final double THETA = 1e-9;
+
+    private final double[] x = new double[NODES];
+    private final double[] y = new double[NODES];
+    private final double[] mass = new double[NODES];
+    private final double[] size = new double[NODES];
+
+    QuadTreeTest() {
+        // Sizes large enough for many nodes to overlap
+        Random random = new Random(1);
+        for (int i = 0; i < NODES; i++) {
+            x[i] = random.nextDouble() * 1000;
+            y[i] = random.nextDouble() * 1000;
+            mass[i] = 1 + random.nextInt(5);
+            size[i] = 1 + random.nextDouble() * 10;
+        }
+    }
+
+    @Test
+    void repulsionWithoutApproximationIsExact() {
+        assertExactRepulsion(false);
+    }
+
+    @Test
+    void repulsionWithoutApproximationIsExactAdjustingSizes() {
+        assertExactRepulsion(true);
+    }
+
+    private void assertExactRepulsion(boolean adjustSizes) {
+        double[] exactDx = new double[NODES];
+        double[] exactDy = new double[NODES];
+        for (int i = 0; i < NODES; i++) {
+            RepulsionKernel.scalar().repulse(i, x[i], y[i], mass[i], size[i], x, y, mass, size, 0, NODES, SCALING_RATIO, adjustSizes, exactDx, exactDy);
+        }
+
+        QuadTree tree = new QuadTree();
+        tree.build(null, 1, NODES, x, y, mass, size);
+        double[] dx = new double[NODES];
+        double[] dy = new double[NODES];
+        for (int i = 0; i < NODES; i++) {
+            tree.applyRepulsion(i, x[i], y[i], mass[i], size[i], SCALING_RATIO, adjustSizes, THETA, dx, dy);
+        }
+
+        for (int i = 0; i < NODES; i++) {
+            double scale = Math.max(1, Math.hypot(exactDx[i], exactDy[i]));
+            assertEquals(exactDx[i], dx[i], 1e-9 * scale, "dx of node " + i);
+            assertEquals(exactDy[i], dy[i], 1e-9 * scale, "dy of node " + i);
+        }
+    }
+
+    @Test
+    void floatRepulsionWithoutApproximationIsExact() {
+        float[] fx = new float[NODES];
+        float[] fy = new float[NODES];
+        float[] fmass = new float[NODES];
+        float[] fsize = new float[NODES];
+        for (int i = 0; i < NODES; i++) {
+            fx[i] = (float) x[i];
+            fy[i] = (float) y[i];
+            fmass[i] = (float) mass[i];
+            fsize[i] = (float) size[i];
+        }
+        FloatQuadTree defaultTree = new FloatQuadTree();
+        defaultTree.build(null, 1, NODES, fx, fy, fmass, fsize);
+        // Larger leaves than the default, with the default kernel
+        FloatQuadTree tree = new FloatQuadTree(RepulsionKernel.get(), 32);
+        tree.build(null, 1, NODES, fx, fy, fmass, fsize);
+        assertTrue(tree.getCellCount() < defaultTree.getCellCount(), "Fewer cells with larger leaves");
+
+        for (boolean adjustSizes : new boolean[] {false, true}) {
+            for (int i = 0; i < NODES; i++) {
+                double[] exact = new double[2];
+                RepulsionKernel.scalar().repulse(fx[i], fy[i], fmass[i], fsize[i], fx, fy, fmass, fsize, 0, NODES, SCALING_RATIO, adjustSizes, exact);
+                double[] force = new double[2];
+                tree.applyRepulsion(fx[i], fy[i], fmass[i], fsize[i], SCALING_RATIO, adjustSizes, THETA, force);
+                double scale = Math.max(1, Math.hypot(exact[0], exact[1]));
+                assertEquals(exact[0], force[0], 1e-9 * scale, "dx of node " + i);
+                assertEquals(exact[1], force[1], 1e-9 * scale, "dy of node " + i);
+            }
+        }
+    }
+
+    @Test
+    void parallelSortIsTheSequentialSort() {
+        int n = 100_000;
+        Random random = new Random(2);
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = (long) random.nextInt(Integer.MAX_VALUE) << 32 | i;
+        }
+        long[] sequential = keys.clone();
+        QuadTree.radixSort(null, 1, sequential, new long[n], new int[QuadTree.RADIX_BUCKETS], n);
+        long[] expected = keys.clone();
+        Arrays.sort(expected);
+        assertArrayEquals(expected, sequential);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            long[] parallel = keys.clone();
+            QuadTree.radixSort(pool, 5, parallel, new long[n], new int[5 * QuadTree.RADIX_BUCKETS], n);
+            assertArrayEquals(expected, parallel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}